@@ -0,0 +1,62 @@
+#!/usr/bin/env python3
+# -*-Python-*-
+
+"""Summarizes how the benchmarks in a JMH JSON result file (such as
+results/generator.json) scale with the size of the board.  Usage:
+
+    python3 scaling.py RESULTS.json
+
+For each benchmark and setting of its other parameters, prints one line
+per board size: the number of squares N, the time per operation, the
+bytes allocated per operation (if the GC profiler was used), and the
+exponent k for which the time grows as N**k between the previous size and
+this one.  Exponents above 1 mark where the cost becomes super-linear in
+the number of squares; they are flagged with '*'.
+"""
+
+import json, math, sys
+from collections import defaultdict
+
+def curves(results):
+    """Return a dictionary mapping (BENCHMARK, OTHER-PARAMETERS) to lists of
+    (SQUARES, SCORE, UNIT, BYTES-PER-OP) sorted by SQUARES, from the parsed
+    JMH RESULTS."""
+    table = defaultdict(list)
+    for result in results:
+        params = dict(result.get("params", {}))
+        size = int(params.pop("size"))
+        others = ", ".join("%s=%s" % item for item in sorted(params.items()))
+        metric = result["primaryMetric"]
+        alloc = result.get("secondaryMetrics", {}).get("gc.alloc.rate.norm")
+        table[(result["benchmark"], others)].append(
+            (size * size, metric["score"], metric["scoreUnit"],
+             alloc["score"] if alloc else None))
+    for points in table.values():
+        points.sort()
+    return table
+
+def report(table, out=sys.stdout):
+    """Print the curves in TABLE (see curves) on OUT."""
+    for (bench, others), points in sorted(table.items()):
+        out.write("%s  %s\n" % (bench, others))
+        out.write("%10s %14s %14s %8s\n" % ("squares", "time", "B/op",
+                                             "exponent"))
+        prev = None
+        for squares, score, unit, alloc in points:
+            exponent = ""
+            if prev is not None and prev[1] > 0 and score > 0:
+                k = math.log(score / prev[1]) / math.log(squares / prev[0])
+                exponent = "%.2f%s" % (k, "*" if k > 1 else "")
+            out.write("%10d %14s %14s %8s\n"
+                      % (squares, "%.1f %s" % (score, unit),
+                         "" if alloc is None else "%.0f" % alloc,
+                         exponent))
+            prev = (squares, score)
+        out.write("\n")
+
+if __name__ == '__main__':
+    if len(sys.argv) != 2:
+        sys.stderr.write("Usage: python3 scaling.py RESULTS.json\n")
+        sys.exit(1)
+    with open(sys.argv[1]) as inp:
+        report(curves(json.load(inp)))
@@ -0,0 +1,175 @@
+package signpost;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static signpost.Utils.*;
+
+/** JMH benchmarks of puzzle generation by PuzzleGenerator, end to end and
+ *  phase by phase, on square boards of several sizes with and without
+ *  free ends (see benchmarks/Makefile).  The generator is reseeded before
+ *  each invocation from a fixed cycle of SEEDS seeds, so that every run
+ *  measures the same puzzles.  The inputs to the later phases (solutions,
+ *  boards with enough fixed numbers, and finished puzzles) are made for
+ *  each of those seeds during setup.  Run with the GC profiler (make
+ *  generator does) to see allocation rates, and with scaling.py to see
+ *  how the cost of each phase grows with the size of the board.
+ *  @author Abel Feleke
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GeneratorBenchmarks {
+
+    /** Number of distinct seeds (and so puzzles) cycled through. */
+    static final int SEEDS = 8;
+
+    /** Seed from which the cycle of seeds is derived. */
+    static final long BASE_SEED = 61;
+
+    /** Number of squares on each side of the boards. */
+    @Param({ "4", "5", "6", "8", "10", "12" })
+    public int size;
+
+    /** True iff puzzles may have free ends. */
+    @Param({ "false", "true" })
+    public boolean freeEnds;
+
+    /** Make the inputs to each phase for every seed. */
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int k = 0; k < SEEDS; k += 1) {
+            _generator.setSeed(puzzleSeed(BASE_SEED, k));
+            _solutions[k] = _generator.makePuzzleSolution(size, size,
+                                                          freeEnds);
+            _clued[k] = new Model(_solutions[k]);
+            _generator.addFixed(_clued[k]);
+            _puzzles[k] = new Model(_clued[k]);
+            _generator.trimFixed(_puzzles[k]);
+            _puzzles[k].restart();
+        }
+    }
+
+    /** Choose the seed for the next invocation. */
+    @Setup(Level.Invocation)
+    public void next() {
+        _k = (_k + 1) % SEEDS;
+        _generator.setSeed(puzzleSeed(BASE_SEED, _k));
+    }
+
+    /** Generate a complete puzzle. */
+    @Benchmark
+    public Model getPuzzle() {
+        return _generator.getPuzzle(size, size, freeEnds);
+    }
+
+    /** Find a random solution path (findSolutionPathFrom). */
+    @Benchmark
+    public int[][] makePuzzleSolution() {
+        return _generator.makePuzzleSolution(size, size, freeEnds);
+    }
+
+    /** Choose fixed numbers that make a solution unique, starting from a
+     *  new board. */
+    @Benchmark
+    public Model makeSolutionUnique(Fresh fresh) {
+        Model model = fresh.model();
+        _generator.makeSolutionUnique(model);
+        return model;
+    }
+
+    /** Remove unneeded fixed numbers from a board whose fixed numbers make
+     *  its solution unique. */
+    @Benchmark
+    public Model trimFixed(Clued clued) {
+        Model model = clued.model();
+        _generator.trimFixed(model);
+        return model;
+    }
+
+    /** Solve a finished puzzle by extending unambiguous paths. */
+    @Benchmark
+    public Model extendSimple(Puzzle puzzle) {
+        Model model = puzzle.model();
+        PuzzleGenerator.extendSimple(model);
+        return model;
+    }
+
+    /** A board made before each invocation, so that its cost is not
+     *  measured. */
+    @State(Scope.Thread)
+    public abstract static class Input {
+
+        /** Make my board for the current seed of BENCH.  JMH sets up BENCH,
+         *  choosing that seed, before any state that depends on it. */
+        @Setup(Level.Invocation)
+        public void make(GeneratorBenchmarks bench) {
+            _model = build(bench, bench._k);
+        }
+
+        /** Return a new board made from the inputs of BENCH for seed
+         *  number K. */
+        abstract Model build(GeneratorBenchmarks bench, int k);
+
+        /** Return my board. */
+        Model model() {
+            return _model;
+        }
+
+        /** My board. */
+        private Model _model;
+    }
+
+    /** A new board with only its first and last numbers fixed. */
+    public static class Fresh extends Input {
+        @Override
+        Model build(GeneratorBenchmarks bench, int k) {
+            return new Model(bench._solutions[k]);
+        }
+    }
+
+    /** A solved board with enough fixed numbers to make its solution
+     *  unique. */
+    public static class Clued extends Input {
+        @Override
+        Model build(GeneratorBenchmarks bench, int k) {
+            return new Model(bench._clued[k]);
+        }
+    }
+
+    /** An unsolved, finished puzzle. */
+    public static class Puzzle extends Input {
+        @Override
+        Model build(GeneratorBenchmarks bench, int k) {
+            return new Model(bench._puzzles[k]);
+        }
+    }
+
+    /** The generator under test. */
+    private final PuzzleGenerator _generator =
+        new PuzzleGenerator(BASE_SEED);
+    /** Solutions for each seed. */
+    private final int[][][] _solutions = new int[SEEDS][][];
+    /** Solved boards for each seed with fixed numbers that make their
+     *  solutions unique, before unneeded ones are removed. */
+    private final Model[] _clued = new Model[SEEDS];
+    /** Finished, unsolved puzzles for each seed. */
+    private final Model[] _puzzles = new Model[SEEDS];
+    /** Number of the current seed. */
+    private int _k;
+}
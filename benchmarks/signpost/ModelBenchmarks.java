@@ -0,0 +1,189 @@
+package signpost;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import signpost.Model.Sq;
+
+/** JMH benchmarks of the frequently used operations of class Model, on
+ *  square boards of several sizes (see benchmarks/Makefile).  All boards
+ *  have the same solution: a path that snakes up and down the columns,
+ *  so that no puzzle generation is needed to set them up.
+ *  @author Abel Feleke
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmarks {
+
+    /** Boards shared by benchmarks that leave them as they found them. */
+    @State(Scope.Thread)
+    public static class Boards {
+
+        /** Number of squares on each side of the boards. */
+        @Param({ "4", "8", "16", "32", "64" })
+        public int size;
+
+        /** Create the boards. */
+        @Setup(Level.Trial)
+        public void setUp() {
+            solution = snake(size, size);
+            solved = new Model(solution);
+            solved.solve();
+            unconnected = new Model(solution);
+            int last = size * size, mid = last / 2;
+            chained = new Model(solution);
+            for (int n = 2; n < last - 1; n += 1) {
+                if (n + 1 != mid) {
+                    chained.solnNumToSq(n)
+                        .connect(chained.solnNumToSq(n + 1));
+                }
+            }
+            shortTail = unconnected.solnNumToSq(2);
+            shortHead = unconnected.solnNumToSq(3);
+            longTail = chained.solnNumToSq(mid - 1);
+            longHead = chained.solnNumToSq(mid);
+        }
+
+        /** The solution of all boards. */
+        int[][] solution;
+        /** A solved board. */
+        Model solved;
+        /** A board with no connections. */
+        Model unconnected;
+        /** A board in which the squares numbered 2 to LAST - 1 in the
+         *  solution form two unnumbered chains, 2 .. MID - 1 and
+         *  MID .. LAST - 1, where LAST is the number of squares and MID is
+         *  half of it. */
+        Model chained;
+        /** Two adjacent unconnected squares of unconnected. */
+        Sq shortTail, shortHead;
+        /** The last square of the first chain of chained, and the first of
+         *  the second. */
+        Sq longTail, longHead;
+    }
+
+    /** A board in which every square's number is fixed, so that
+     *  autoconnect connects them all. */
+    @State(Scope.Thread)
+    public abstract static class Numbered {
+
+        /** Number of squares on each side of the board. */
+        @Param({ "4", "8", "16", "32", "64" })
+        public int size;
+
+        /** Create the board. */
+        @Setup(Level.Trial)
+        public void setUp() {
+            int[][] solution = snake(size, size);
+            model = new Model(solution);
+            for (Sq sq : model) {
+                sq.setFixedNum(solution[sq.x][sq.y]);
+            }
+        }
+
+        /** The board. */
+        Model model;
+    }
+
+    /** A Numbered board that is unconnected before each invocation. */
+    public static class Unconnected extends Numbered {
+        /** Remove all connections. */
+        @Setup(Level.Invocation)
+        public void reset() {
+            model.restart();
+        }
+    }
+
+    /** A Numbered board that is fully connected before each
+     *  invocation. */
+    public static class Connected extends Numbered {
+        /** Make all connections. */
+        @Setup(Level.Invocation)
+        public void reset() {
+            model.autoconnect();
+        }
+    }
+
+    /** Return a WIDTH x HEIGHT solution whose path runs up column 0, down
+     *  column 1, and so on, starting in the lower-left corner. */
+    static int[][] snake(int width, int height) {
+        int[][] solution = new int[width][height];
+        int n = 1;
+        for (int x = 0; x < width; x += 1) {
+            for (int k = 0; k < height; k += 1) {
+                solution[x][x % 2 == 0 ? k : height - 1 - k] = n;
+                n += 1;
+            }
+        }
+        return solution;
+    }
+
+    /** Construct a board from a solution. */
+    @Benchmark
+    public Model construct(Boards boards) {
+        return new Model(boards.solution);
+    }
+
+    /** Copy a solved board. */
+    @Benchmark
+    public Model copy(Boards boards) {
+        return new Model(boards.solved);
+    }
+
+    /** Connect and disconnect two unconnected squares. */
+    @Benchmark
+    public boolean connectShort(Boards boards) {
+        boolean result = boards.shortTail.connect(boards.shortHead);
+        boards.shortTail.disconnect();
+        return result;
+    }
+
+    /** Join and separate two chains, each of half the board. */
+    @Benchmark
+    public boolean connectLong(Boards boards) {
+        boolean result = boards.longTail.connect(boards.longHead);
+        boards.longTail.disconnect();
+        return result;
+    }
+
+    /** Connect all squares of a board whose numbers are fixed. */
+    @Benchmark
+    public boolean autoconnect(Unconnected board) {
+        return board.model.autoconnect();
+    }
+
+    /** Remove all connections of a fully connected board. */
+    @Benchmark
+    public Model restart(Connected board) {
+        board.model.restart();
+        return board.model;
+    }
+
+    /** Print a solved board. */
+    @Benchmark
+    public String print(Boards boards) {
+        return boards.solved.toString();
+    }
+
+    /** Compute the successors of every square of an empty board. */
+    @Benchmark
+    public Place.PlaceList[][][] successorCells(Boards boards) {
+        return Place.successorCells(boards.size, boards.size);
+    }
+
+}
@@ -0,0 +1,135 @@
+package signpost;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.imageio.ImageIO;
+
+import static signpost.Utils.*;
+
+/** Renders boards to PNG images in a directory without a display, using
+ *  the drawing code of the GUI (BoardPainter) on offscreen images.  Boards
+ *  are drawn and written in parallel on a fixed pool of threads, all of
+ *  which share one painter, and so its pre-rendered tiles.  The main
+ *  program writes thumbnails of generated puzzles.
+ *  @author Abel Feleke
+ */
+class BatchRenderer implements AutoCloseable {
+
+    /** Default length of the side of a square in thumbnails (pixels). */
+    static final int THUMBNAIL_SIDE = 24;
+
+    /** A renderer writing images to the directory DIR (created if
+     *  necessary) with squares CELLSIDE pixels on a side, using THREADS
+     *  threads. */
+    BatchRenderer(Path dir, int cellSide, int threads) throws IOException {
+        _dir = Files.createDirectories(dir);
+        _painter = new BoardPainter(cellSide);
+        _pool = Executors.newFixedThreadPool(threads, (r) -> {
+            Thread t = new Thread(r, "batch-render");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Return an image of MODEL. */
+    BufferedImage image(Model model) {
+        BufferedImage img =
+            new BufferedImage(_painter.boardWidth(model.width()),
+                              _painter.boardHeight(model.height()),
+                              BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        try {
+            _painter.paint(g, model, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return img;
+    }
+
+    /** Arrange to write an image of MODEL, as it is now, to the file NAME.png
+     *  in my directory, returning the file's eventual path.  MODEL may be
+     *  changed as soon as this returns. */
+    CompletableFuture<Path> render(Model model, String name) {
+        Model copy = new Model(model);
+        Path file = _dir.resolve(name + ".png");
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                if (!ImageIO.write(image(copy), "png", file.toFile())) {
+                    throw new IOException("no PNG writer");
+                }
+                return file;
+            } catch (IOException excp) {
+                throw new UncheckedIOException(excp);
+            }
+        }, _pool);
+    }
+
+    /** Stop my threads after the images already requested are written. */
+    @Override
+    public void close() {
+        _pool.shutdown();
+    }
+
+    /** Write thumbnails of generated puzzles.  ARGS are DIR SEED COUNT
+     *  TYPE..., where each TYPE has the form WxH or WxHF (for free ends).
+     *  DIR receives the images WxH[F]-K.png of COUNT puzzles of each TYPE,
+     *  the K-th of which is generated from puzzleSeed(SEED, K), as
+     *  PuzzlePack does. */
+    public static void main(String... args) throws IOException {
+        long seed = 0;
+        int count = 0;
+        ArrayList<PuzzlePack.Type> types = new ArrayList<>();
+        try {
+            if (args.length < 4) {
+                throw badArgs("too few arguments");
+            }
+            seed = toLong(args[1]);
+            count = toInt(args[2]);
+            for (int i = 3; i < args.length; i += 1) {
+                types.add(new PuzzlePack.Type(args[i]));
+            }
+        } catch (IllegalArgumentException excp) {
+            System.err.println("Usage: java signpost.BatchRenderer DIR SEED"
+                               + " COUNT WxH[F]...");
+            System.exit(1);
+        }
+        System.setProperty("java.awt.headless", "true");
+        PuzzleGenerator puzzler = new PuzzleGenerator(seed);
+        ArrayList<CompletableFuture<Path>> images = new ArrayList<>();
+        try (BatchRenderer renderer =
+             new BatchRenderer(Paths.get(args[0]), THUMBNAIL_SIDE,
+                               Runtime.getRuntime().availableProcessors())) {
+            for (PuzzlePack.Type type : types) {
+                for (int k = 0; k < count; k += 1) {
+                    puzzler.setSeed(puzzleSeed(seed, k));
+                    Model puzzle = puzzler.getPuzzle(type.width, type.height,
+                                                     type.freeEnds);
+                    images.add(renderer.render(puzzle, type + "-" + k));
+                }
+            }
+            CompletableFuture
+                .allOf(images.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException excp) {
+            System.err.printf("Could not write image: %s%n",
+                              excp.getCause().getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Directory receiving images. */
+    private final Path _dir;
+    /** Draws all boards. */
+    private final BoardPainter _painter;
+    /** Threads drawing and writing images. */
+    private final ExecutorService _pool;
+}
@@ -0,0 +1,60 @@
+package signpost;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the BatchRenderer class.
+ *  @author Abel Feleke
+ */
+public class BatchRendererTests {
+
+    /** Return true iff IMG0 and IMG1 have the same size and pixels. */
+    private boolean samePixels(BufferedImage img0, BufferedImage img1) {
+        if (img0.getWidth() != img1.getWidth()
+            || img0.getHeight() != img1.getHeight()) {
+            return false;
+        }
+        for (int x = 0; x < img0.getWidth(); x += 1) {
+            for (int y = 0; y < img0.getHeight(); y += 1) {
+                if (img0.getRGB(x, y) != img1.getRGB(x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void renderTest() throws Exception {
+        Path dir = Files.createTempDirectory("thumbs");
+        PuzzleGenerator puzzler = new PuzzleGenerator(4);
+        ArrayList<Model> puzzles = new ArrayList<>();
+        ArrayList<CompletableFuture<Path>> files = new ArrayList<>();
+        try (BatchRenderer renderer = new BatchRenderer(dir, 20, 3)) {
+            for (int k = 0; k < 6; k += 1) {
+                Model puzzle = puzzler.getPuzzle(4 + k % 2, 4, false);
+                puzzles.add(new Model(puzzle));
+                files.add(renderer.render(puzzle, "p" + k));
+                puzzle.solve();
+            }
+            for (int k = 0; k < 6; k += 1) {
+                Path file = files.get(k).join();
+                assertEquals("image name", dir.resolve("p" + k + ".png"),
+                             file);
+                BufferedImage img = ImageIO.read(file.toFile());
+                assertTrue("image matches unsolved puzzle",
+                           samePixels(renderer.image(puzzles.get(k)), img));
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+}
@@ -0,0 +1,409 @@
+package signpost;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import static java.awt.RenderingHints.*;
+
+import signpost.Model.Sq;
+
+/** Draws Signpost boards with squares of a given size.  Arrows, stars,
+ *  dots, and the numbers and group labels of squares are rendered once
+ *  into small transparent tiles, which are kept, so that drawing a
+ *  square amounts to filling its background and copying a few images.
+ *  A painter draws at one scale; a new painter is needed for another.
+ *  Squares smaller than OVERVIEW_SIDE are drawn in low detail, as blocks
+ *  of their background colors, marked if they lack a successor.
+ *  Painters may be shared by several threads.
+ *  @author Abel Feleke
+ */
+class BoardPainter {
+
+    /** Colors of squares, arrows, and grid lines. */
+    static final Color
+        BACKGROUND_COLOR = new Color(220, 220, 220),
+        GRID_LINE_COLOR = Color.black,
+        ARROW_COLOR = Color.black,
+        NUMBERED_SQUARE_COLOR = Color.white,
+        CONNECTED_COLOR = new Color(180, 180, 180),
+        NUM_COLOR = Color.black,
+        FIXED_NUM_COLOR = Color.blue;
+
+    /** Basic cell background RGB color values (from Simon Tatham). */
+    static final int[] BG_BASE_RGB = {
+        0xffffff,
+        0xffa07a,
+        0x98fb98,
+        0x7fffd4,
+        0x9370db,
+        0xffa500,
+        0x87cefa,
+        0xffff00,
+    };
+
+    /** Background colors used by runs of unnumbered squares. */
+    static final Color[] BG_COLORS = new Color[BG_BASE_RGB.length * 3];
+
+    static {
+        int p = BG_BASE_RGB.length;
+        for (int i = 0; i < BG_COLORS.length; i += 1) {
+            if (i < p) {
+                BG_COLORS[i] = new Color(BG_BASE_RGB[i]);
+            } else {
+                BG_COLORS[i] =
+                    new Color((BG_COLORS[i - p].getRGB()
+                               + BG_COLORS[i - p + 1].getRGB()) / 2);
+            }
+        }
+    }
+
+    /** Dimensions (in pixels) of the drawing of a square at full scale,
+     *  and other dimensions. */
+    static final int
+        BASE_CELL_SIDE = 50,
+        GRID_LINE_WIDTH = 1,
+        TEXT_OFFSET = 4,
+        OFFSET = 2,
+        DOT_SIZE = 7;
+
+    /** Width of the transparent margin around each tile at full scale,
+     *  which allows turned arrows to extend slightly beyond their
+     *  squares. */
+    static final int TILE_MARGIN = 4;
+
+    /** Squares with sides shorter than this (in pixels) are drawn in low
+     *  detail. */
+    static final int OVERVIEW_SIDE = 16;
+
+    /** Maximum number of cached text tiles. */
+    static final int MAX_TEXT_TILES = 4096;
+
+    /** Strokes for ordinary grid lines. */
+    static final BasicStroke
+        GRIDLINE_STROKE = new BasicStroke(GRID_LINE_WIDTH);
+
+    /** Font for square numbers. */
+    static final Font NUM_FONT = new Font("Dejavu Serif", Font.BOLD, 18);
+
+    /** Font for square group-sequence numbers (e.g., "a+1"). */
+    static final Font GROUP_TEXT_FONT = new Font("Dejavu Serif", Font.BOLD, 12);
+
+    /** Arrow vertex coordinates: x in first row, y in second. */
+    static final int [][] ARROW = {
+        {  0,  7,  7, 14, 14, 21, 10,  },
+        { 10, 10,  0, 0,  10, 10, 21,  }
+    };
+
+    /** Star vertex coordinates. */
+    static final int[][] STAR = {
+        { 22, 15, 18, 11, 4, 7, 0, 8, 11, 14 },
+        { 8, 13, 21, 16, 21, 13, 8, 8, 0, 8 }
+    };
+
+    /** Amount of rotation between arrow positions. */
+    static final double PI_4 = 0.25 * Math.PI;
+
+    /** A painter drawing squares CELLSIDE pixels on a side. */
+    BoardPainter(int cellSide) {
+        _cellSide = cellSide;
+        _cellSep = cellSide + GRID_LINE_WIDTH;
+        _scale = (double) cellSide / BASE_CELL_SIDE;
+        _margin = (int) Math.ceil(TILE_MARGIN * _scale);
+        _overview = cellSide < OVERVIEW_SIDE;
+        for (int dir = 0; dir <= 8; dir += 1) {
+            int d = dir;
+            _arrowTiles[2 * dir] =
+                tile(BASE_CELL_SIDE, (g) -> drawArrow(g, d, ARROW_COLOR));
+            _arrowTiles[2 * dir + 1] =
+                tile(BASE_CELL_SIDE, (g) -> drawArrow(g, d, CONNECTED_COLOR));
+        }
+        _dotTile = tile(BASE_CELL_SIDE, (g) -> {
+            g.setColor(ARROW_COLOR);
+            g.fillOval(3 * TEXT_OFFSET, BASE_CELL_SIDE - 4 * TEXT_OFFSET,
+                       DOT_SIZE, DOT_SIZE);
+        });
+    }
+
+    /** Return the length of the side of a square in pixels. */
+    int cellSide() {
+        return _cellSide;
+    }
+
+    /** Return the width in pixels of a board WIDTH squares across. */
+    int boardWidth(int width) {
+        return width * _cellSep + 3 * GRID_LINE_WIDTH;
+    }
+
+    /** Return the height in pixels of a board HEIGHT squares high. */
+    int boardHeight(int height) {
+        return height * _cellSep + 3 * GRID_LINE_WIDTH;
+    }
+
+    /** Return the horizontal pixel coordinate of the left edge of column
+     *  X. */
+    int cx(int x) {
+        return OFFSET + x * _cellSep;
+    }
+
+    /** Return the vertical pixel coordinate of the bottom edge of row Y
+     *  of a board HEIGHT squares high. */
+    int cy(int y, int height) {
+        return OFFSET + (height - y) * _cellSep;
+    }
+
+    /** Return the column containing horizontal pixel coordinate PX. */
+    int column(int px) {
+        return Math.floorDiv(px - OFFSET, _cellSep);
+    }
+
+    /** Return the row containing vertical pixel coordinate PY on a board
+     *  HEIGHT squares high. */
+    int row(int py, int height) {
+        return height - 1 - Math.floorDiv(py - OFFSET, _cellSep);
+    }
+
+    /** Return the pixels covered by the drawing of square (X, Y) on a board
+     *  HEIGHT squares high, including its borders. */
+    Rectangle bounds(int x, int y, int height) {
+        return new Rectangle(cx(x) - _margin, cy(y, height) - _cellSep
+                             - _margin, _cellSep + 2 * _margin,
+                             _cellSep + 2 * _margin);
+    }
+
+    /** Draw the part of MODEL within CLIP (everything if CLIP is null) on
+     *  G, with arrows turned by DIRBUMP steps. */
+    void paint(Graphics2D g, Model model, int dirBump, Rectangle clip) {
+        int[] posn = new int[model.size()];
+        chainPositions(model, posn);
+        paint(g, model, dirBump, clip, posn);
+    }
+
+    /** As for paint(G, MODEL, DIRBUMP, CLIP), given the positions of the
+     *  squares of MODEL in their chains in POSN, as set by
+     *  chainPositions. */
+    void paint(Graphics2D g, Model model, int dirBump, Rectangle clip,
+               int[] posn) {
+        int width = model.width(), height = model.height();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, boardWidth(width),
+                                 boardHeight(height));
+        }
+        g.setColor(BACKGROUND_COLOR);
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        int x0 = Math.max(0, column(clip.x)),
+            x1 = Math.min(width - 1, column(clip.x + clip.width)),
+            y0 = Math.max(0, row(clip.y + clip.height, height)),
+            y1 = Math.min(height - 1, row(clip.y, height));
+        if (_overview) {
+            for (int x = x0; x <= x1; x += 1) {
+                for (int y = y0; y <= y1; y += 1) {
+                    drawOverviewSquare(g, model.get(x, y), cx(x),
+                                       cy(y, height));
+                }
+            }
+            return;
+        }
+        drawGrid(g, x0, y0, x1, y1, height);
+        for (int x = x0; x <= x1; x += 1) {
+            for (int y = y0; y <= y1; y += 1) {
+                drawSquare(g, model.get(x, y), cx(x), cy(y, height),
+                           dirBump, posn[x * height + y]);
+            }
+        }
+    }
+
+    /** Set POSN[x * H + y], where H is the height of MODEL, to the
+     *  position of square (x, y) of MODEL in its chain of connected
+     *  squares, counting from 0 at the chain's head. */
+    static void chainPositions(Model model, int[] posn) {
+        int h = model.height();
+        for (Sq sq : model) {
+            if (sq.predecessor() == null) {
+                int k = 0;
+                for (Sq p = sq; p != null; p = p.successor()) {
+                    posn[p.x * h + p.y] = k;
+                    k += 1;
+                }
+            }
+        }
+    }
+
+    /** Draw SQ on G in low detail, with the lower-left corner of its
+     *  square at (PX, PY). */
+    private void drawOverviewSquare(Graphics2D g, Sq sq, int px, int py) {
+        g.setColor(sq.group() >= 0 ? groupColor(sq.group())
+                   : CONNECTED_COLOR);
+        g.fillRect(px + GRID_LINE_WIDTH, py + GRID_LINE_WIDTH - _cellSide,
+                   _cellSide - GRID_LINE_WIDTH, _cellSide - GRID_LINE_WIDTH);
+        if (sq.successor() == null && sq.direction() != 0) {
+            int mark = Math.max(1, _cellSide / 3);
+            g.setColor(sq.hasFixedNum() ? FIXED_NUM_COLOR : ARROW_COLOR);
+            g.fillRect(px + (_cellSide - mark + 1) / 2,
+                       py - (_cellSide + mark - 1) / 2, mark, mark);
+        }
+    }
+
+    /** Draw the grid lines bounding columns X0 to X1 and rows Y0 to Y1 of a
+     *  board HEIGHT squares high on G. */
+    private void drawGrid(Graphics2D g, int x0, int y0, int x1, int y1,
+                          int height) {
+        g.setColor(GRID_LINE_COLOR);
+        g.setStroke(GRIDLINE_STROKE);
+        int top = cy(y1 + 1, height), bottom = cy(y0, height);
+        for (int k = x0; k <= x1 + 1; k += 1) {
+            g.drawLine(cx(k), top, cx(k), bottom);
+        }
+        for (int k = y0; k <= y1 + 1; k += 1) {
+            g.drawLine(cx(x0), cy(k, height), cx(x1 + 1), cy(k, height));
+        }
+    }
+
+    /** Draw SQ, which is at position POSN in its chain, on G, with the
+     *  lower-left corner of its square at (PX, PY) and its arrow turned by
+     *  DIRBUMP steps. */
+    void drawSquare(Graphics2D g, Sq sq, int px, int py, int dirBump,
+                    int posn) {
+        int left = px - _margin, top = py - _cellSide - _margin;
+        if (sq.group() >= 0) {
+            g.setColor(groupColor(sq.group()));
+            g.fillRect(px + GRID_LINE_WIDTH, py + GRID_LINE_WIDTH - _cellSide,
+                       _cellSide - GRID_LINE_WIDTH,
+                       _cellSide - GRID_LINE_WIDTH);
+        }
+        g.drawImage(arrowTile(sq, dirBump), left, top, null);
+        if (sq.predecessor() == null && sq.sequenceNum() != 1) {
+            g.drawImage(_dotTile, left, top, null);
+        }
+        BufferedImage text = textTile(sq, posn);
+        if (text != null) {
+            g.drawImage(text, left, top, null);
+        }
+    }
+
+    /** Return the color associated with group N. */
+    static Color groupColor(int n) {
+        if (n == 0) {
+            return NUMBERED_SQUARE_COLOR;
+        } else {
+            return BG_COLORS[(n - 1) % (BG_COLORS.length - 1) + 1];
+        }
+    }
+
+    /** Return the tile for the arrow (or star) of SQ, turned by DIRBUMP
+     *  steps. */
+    private BufferedImage arrowTile(Sq sq, int dirBump) {
+        int dir = sq.direction() == 0 ? 0
+            : (sq.direction() + dirBump - 1) % 8 + 1;
+        return _arrowTiles[2 * dir + (sq.successor() == null ? 0 : 1)];
+    }
+
+    /** Return the tile for the number or group label of SQ, which is at
+     *  position POSN in its chain, or null if it has neither. */
+    private BufferedImage textTile(Sq sq, int posn) {
+        long key;
+        if (sq.sequenceNum() != 0) {
+            int color = sq.hasFixedNum() ? 0
+                : sq.successor() == null || sq.predecessor() == null ? 1 : 2;
+            key = ((long) sq.sequenceNum() << 2) | color;
+        } else if (sq.group() > 0) {
+            key = (1L << 62) | ((long) sq.group() << 31) | posn;
+        } else {
+            return null;
+        }
+        BufferedImage tile = _textTiles.get(key);
+        if (tile == null) {
+            if (_textTiles.size() >= MAX_TEXT_TILES) {
+                _textTiles.clear();
+            }
+            String text = sq.seqText();
+            Font font = sq.sequenceNum() != 0 ? NUM_FONT : GROUP_TEXT_FONT;
+            Color color = numberColor(sq);
+            tile = tile(BASE_CELL_SIDE / 2, (g) -> {
+                g.setColor(color);
+                g.setFont(font);
+                g.drawString(text, TEXT_OFFSET,
+                             BASE_CELL_SIDE / 2 - 2 * TEXT_OFFSET);
+            });
+            _textTiles.put(key, tile);
+        }
+        return tile;
+    }
+
+    /** Return the appropriate color for numeral in SQ. */
+    private static Color numberColor(Sq sq) {
+        if (sq.sequenceNum() == 0) {
+            return NUM_COLOR;
+        }
+        return sq.hasFixedNum() ? FIXED_NUM_COLOR
+            : sq.successor() == null || sq.predecessor() == null ? NUM_COLOR
+            : CONNECTED_COLOR;
+    }
+
+    /** Return a new transparent tile covering the top HEIGHT pixels (at
+     *  full scale) of a square and its margin, drawn by DRAWER in
+     *  full-scale coordinates relative to the square's upper-left
+     *  corner. */
+    private BufferedImage tile(int height, Consumer<Graphics2D> drawer) {
+        int side = _cellSide + 2 * _margin;
+        BufferedImage tile =
+            new BufferedImage(side,
+                              (int) Math.ceil(height * _scale) + 2 * _margin,
+                              BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = tile.createGraphics();
+        g.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(KEY_TEXT_ANTIALIASING, VALUE_TEXT_ANTIALIAS_ON);
+        g.translate(_margin, _margin);
+        g.scale(_scale, _scale);
+        drawer.accept(g);
+        g.dispose();
+        return tile;
+    }
+
+    /** Draw an arrow in direction DIR (a star if DIR is 0) in COLOR on G,
+     *  in full-scale coordinates relative to the upper-left corner of its
+     *  square. */
+    private static void drawArrow(Graphics2D g, int dir, Color color) {
+        g.setColor(color);
+        int px = 0, py = BASE_CELL_SIDE;
+        if (dir == 0) {
+            int[] x = new int[STAR[0].length], y = new int[STAR[0].length];
+            for (int i = 0; i < x.length; i += 1) {
+                x[i] = px + STAR[0][i] + BASE_CELL_SIDE / 2 + 2;
+                y[i] = py + STAR[1][i] - BASE_CELL_SIDE / 2 - 2;
+            }
+            g.fillPolygon(x, y, x.length);
+            return;
+        }
+        int[] x = new int[ARROW[0].length], y = new int[ARROW[0].length];
+        for (int i = 0; i < x.length; i += 1) {
+            x[i] = px + BASE_CELL_SIDE / 2 + 2 + ARROW[0][i];
+            y[i] = py - BASE_CELL_SIDE / 2 + 2 + ARROW[1][i];
+        }
+        g.rotate((dir - 4) * PI_4,
+                 px + 3 * BASE_CELL_SIDE / 4, py - BASE_CELL_SIDE / 4);
+        g.fillPolygon(x, y, x.length);
+    }
+
+    /** Length of the side of a square, and distance between adjacent
+     *  squares (in pixels). */
+    private final int _cellSide, _cellSep;
+    /** Ratio of my square size to BASE_CELL_SIDE. */
+    private final double _scale;
+    /** Width of tile margins in pixels. */
+    private final int _margin;
+    /** True iff I draw squares in low detail. */
+    private final boolean _overview;
+    /** Arrow and star tiles, indexed by 2 * direction (0 for stars) + 1 if
+     *  the arrow is drawn in CONNECTED_COLOR. */
+    private final BufferedImage[] _arrowTiles = new BufferedImage[18];
+    /** Tile for the dot marking unconnected predecessors. */
+    private final BufferedImage _dotTile;
+    /** Text tiles, keyed by number and color or by group and position. */
+    private final ConcurrentHashMap<Long, BufferedImage> _textTiles =
+        new ConcurrentHashMap<>();
+}
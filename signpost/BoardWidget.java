@@ -2,246 +2,159 @@ package signpost;
 
 import ucb.gui2.Pad;
 
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.ArrayList;
+import java.util.function.Consumer;
 
-import java.awt.Font;
-import java.awt.Color;
 import java.awt.Graphics2D;
-import java.awt.BasicStroke;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
-import java.awt.geom.AffineTransform;
-import static java.awt.RenderingHints.*;
+import javax.swing.Timer;
 
 import static signpost.Place.pl;
+import signpost.Command.Verb;
 import signpost.Model.Sq;
 
-/** A widget that displays a Signpost puzzle.
+/** A widget that displays a Signpost puzzle.  The widget is a viewport
+ *  onto the board, which may be larger: the mouse wheel zooms in and out
+ *  around the pointer, and dragging with any button but the first pans.
+ *  Only the squares within the visible part of the board are drawn.
  *  @author Abel Feleke
  */
 class BoardWidget extends Pad {
 
-    /* Parameters controlling sizes, speeds, colors, and fonts. */
+    /* Parameters controlling sizes and speeds. */
 
     /** Pause in milliseconds before each turn of arrows to signal solved
      *  puzzle. */
-    static final long ARROW_BUMP_INTERVAL = 120;
-
-    /** Colors of squares, arrows, and grid lines. */
-    static final Color
-        BACKGROUND_COLOR = new Color(220, 220, 220),
-        GRID_LINE_COLOR = Color.black,
-        ARROW_COLOR = Color.black,
-        NUMBERED_SQUARE_COLOR = Color.white,
-        CONNECTED_COLOR = new Color(180, 180, 180),
-        NUM_COLOR = Color.black,
-        FIXED_NUM_COLOR = Color.blue;
-
-    /** Basic cell background RGB color values (from Simon Tatham). */
-    static final int[] BG_BASE_RGB = {
-        0xffffff,
-        0xffa07a,
-        0x98fb98,
-        0x7fffd4,
-        0x9370db,
-        0xffa500,
-        0x87cefa,
-        0xffff00,
-    };
-
-    /** Background colors used by runs of unnumbered squares. */
-    static final Color[] BG_COLORS = new Color[BG_BASE_RGB.length * 3];
-
-    static {
-        int p = BG_BASE_RGB.length;
-        for (int i = 0; i < BG_COLORS.length; i += 1) {
-            if (i < p) {
-                BG_COLORS[i] = new Color(BG_BASE_RGB[i]);
-            } else {
-                BG_COLORS[i] =
-                    new Color((BG_COLORS[i - p].getRGB()
-                               + BG_COLORS[i - p + 1].getRGB()) / 2);
-            }
-        }
-    }
+    static final int ARROW_BUMP_INTERVAL = 120;
 
-    /** Bar width separating squares and other dimensions (pixels). */
+    /** Side of squares and padding around the board (pixels). */
     static final int
-        CELL_SIDE = 50,
-        GRID_LINE_WIDTH = 1,
-        PADDING = CELL_SIDE / 2,
-        TEXT_OFFSET = 4,
-        OFFSET = 2,
-        DOT_SIZE = 7;
-
-    /** Separation between cell centers and half separation between cell
-     *  centers. */
-    static final int
-        CELL_SEP = CELL_SIDE + GRID_LINE_WIDTH,
-        HALF_SEP = CELL_SEP / 2;
-
-    /** Strokes for ordinary grid lines and those that are parts of
-     *  boundaries. */
-    static final BasicStroke
-        GRIDLINE_STROKE = new BasicStroke(GRID_LINE_WIDTH);
-
-    /** Font for square numbers. */
-    static final Font NUM_FONT = new Font("Dejavu Serif", Font.BOLD, 18);
+        CELL_SIDE = BoardPainter.BASE_CELL_SIDE,
+        PADDING = CELL_SIDE / 2;
 
-    /** Font for square group-sequence numbers (e.g., "a+1"). */
-    static final Font GROUP_TEXT_FONT = new Font("Dejavu Serif", Font.BOLD, 12);
+    /** Limits on the side of squares when zooming (pixels). */
+    static final int MIN_CELL_SIDE = 3, MAX_CELL_SIDE = 2 * CELL_SIDE;
 
-    /** Font for dots. */
-    static final Font DOT_FONT = new Font("SansSerif", Font.BOLD, 36);
+    /** Factor by which each zoom step enlarges the board. */
+    static final double ZOOM_STEP = 1.25;
 
-    /** Arrow vertex coordinates: x in first row, y in second. */
-    static final int [][] ARROW = {
-        {  0,  7,  7, 14, 14, 21, 10,  },
-        { 10, 10,  0, 0,  10, 10, 21,  }
-    };
-
-    /** Star vertex coordinates. */
-    static final int[][] STAR = {
-        { 22, 15, 18, 11, 4, 7, 0, 8, 11, 14 },
-        { 8, 13, 21, 16, 21, 13, 8, 8, 0, 8 }
-    };
-
-    /** Amount of rotation between arrow positions. */
-    static final double PI_4 = 0.25 * Math.PI;
+    /** Largest preferred width or height of the viewport (pixels).  Larger
+     *  boards start zoomed out to fit it, down to MIN_CELL_SIDE, and
+     *  beyond that are scrolled. */
+    static final int MAX_VIEW_SIZE = 800;
 
     /** A graphical representation of a Signpost board that sends commands
      *  derived from mouse clicks to COMMANDS. */
-    BoardWidget(ArrayBlockingQueue<String> commands) {
+    BoardWidget(Consumer<Command> commands) {
         _commands = commands;
         setMouseHandler("press", this::mousePressed);
         setMouseHandler("release", this::mouseReleased);
+        setMouseHandler("drag", this::mouseDragged);
+        me.addMouseWheelListener((e) -> zoom(Math.pow(ZOOM_STEP,
+                                                      -e.getWheelRotation()),
+                                             e.getX(), e.getY()));
+        _solvedTimer = new Timer(ARROW_BUMP_INTERVAL, (e) -> bumpArrows());
+        _solvedTimer.setInitialDelay(ARROW_BUMP_INTERVAL);
     }
 
-    /** Set the size of the board to WIDTH x HEIGHT. */
+    /** Set the size of the board to WIDTH x HEIGHT, zooming out as
+     *  needed to fit it within MAX_VIEW_SIZE. */
     public void setSize(int width, int height) {
-        synchronized (me) {
+        synchronized (this) {
             _width = width; _height = height;
-            _boardWidth = width * CELL_SEP + 3 * GRID_LINE_WIDTH;
-            _boardHeight = height * CELL_SEP + 3 * GRID_LINE_WIDTH;
-            setPreferredSize(_boardWidth, _boardHeight);
+            int side = MAX_VIEW_SIZE / Math.max(width, height) - 1;
+            setPainter(Math.max(MIN_CELL_SIDE, Math.min(CELL_SIDE, side)));
+            _viewX = _viewY = 0;
+            setPreferredSize(Math.min(_boardWidth, MAX_VIEW_SIZE),
+                             Math.min(_boardHeight, MAX_VIEW_SIZE));
         }
         repaint();
     }
 
-    /** Draw the grid lines on G. */
-    private void drawGrid(Graphics2D g) {
-        g.setColor(GRID_LINE_COLOR);
-        g.setStroke(GRIDLINE_STROKE);
-        for (int k = 0; k <= _width; k += 1) {
-            g.drawLine(cx(k), cy(0), cx(k), cy(_height));
+    /** Zoom by FACTOR, keeping the point under pixel (PX, PY) of the
+     *  viewport in place. */
+    synchronized void zoom(double factor, int px, int py) {
+        int side = (int) Math.round(_painter.cellSide() * factor);
+        if (side == _painter.cellSide()) {
+            side += factor > 1 ? 1 : -1;
         }
-        for (int k = 0; k <= _height; k += 1) {
-            g.drawLine(cx(0), cy(k), cx(_width), cy(k));
+        side = Math.max(MIN_CELL_SIDE, Math.min(MAX_CELL_SIDE, side));
+        if (side == _painter.cellSide()) {
+            return;
         }
+        double scaleX = _boardWidth, scaleY = _boardHeight;
+        setPainter(side);
+        scaleX = _boardWidth / scaleX;
+        scaleY = _boardHeight / scaleY;
+        _viewX = (int) Math.round((_viewX + px) * scaleX) - px;
+        _viewY = (int) Math.round((_viewY + py) * scaleY) - py;
+        clampView();
+        repaint();
     }
 
-    /** Return the appropriate color for arrow in SQ. */
-    private Color arrowColor(Sq sq) {
-        return sq.successor() == null ? ARROW_COLOR : CONNECTED_COLOR;
+    /** Zoom by FACTOR about the center of the viewport. */
+    void zoom(double factor) {
+        zoom(factor, me.getWidth() / 2, me.getHeight() / 2);
     }
 
-    /** Return the appropriate color for numeral in SQ. */
-    private Color numberColor(Sq sq) {
-        return sq.hasFixedNum() ? FIXED_NUM_COLOR
-            : sq.successor() == null || sq.predecessor() == null ? NUM_COLOR
-            : CONNECTED_COLOR;
+    /** Draw squares SIDE pixels on a side from now on. */
+    private void setPainter(int side) {
+        if (side != _painter.cellSide()) {
+            _painter = new BoardPainter(side);
+        }
+        _boardWidth = _painter.boardWidth(_width);
+        _boardHeight = _painter.boardHeight(_height);
     }
 
-    /** Draw star in SQ on G. */
-    private void drawStar(Graphics2D g, Sq sq) {
-        g.setColor(arrowColor(sq));
-        int px = cx(sq.x), py = cy(sq.y);
-        int[] x = new int[STAR[0].length], y = new int[STAR[0].length];
-        for (int i = 0; i < x.length; i += 1) {
-            x[i] = px + STAR[0][i] + CELL_SIDE / 2 + 2;
-            y[i] = py + STAR[1][i] - CELL_SIDE / 2 - 2;
-        }
-        g.fillPolygon(x, y, x.length);
+    /** Adjust the viewport's position so as to show as much of the board as
+     *  possible. */
+    private void clampView() {
+        _viewX = Math.max(0, Math.min(_viewX, _boardWidth - me.getWidth()));
+        _viewY = Math.max(0, Math.min(_viewY,
+                                      _boardHeight - me.getHeight()));
     }
 
-    /** Draw arrow in SQ on G. */
-    private void drawArrow(Graphics2D g, Sq sq) {
-        if (sq.direction() == 0) {
-            drawStar(g, sq);
-            return;
-        }
-        g.setColor(arrowColor(sq));
-        int px = cx(sq.x), py = cy(sq.y);
-        int[] x = new int[ARROW[0].length], y = new int[ARROW[0].length];
-        for (int i = 0; i < x.length; i += 1) {
-            x[i] = px + CELL_SIDE / 2 + 2 + ARROW[0][i];
-            y[i] = py - CELL_SIDE / 2 + 2 + ARROW[1][i];
-        }
-        AffineTransform init = g.getTransform();
-        int dir = (sq.direction() + _dirBump - 1) % 8 + 1;
-        g.rotate((dir - 4) * PI_4,
-                 px + 3 * CELL_SIDE / 4, py - CELL_SIDE / 4);
-        g.fillPolygon(x, y, x.length);
-        g.setTransform(init);
+    /** Start giving a visual signal that the puzzle is solved: a full turn
+     *  of all arrows, one step every ARROW_BUMP_INTERVAL milliseconds,
+     *  driven by _solvedTimer so that the caller need not wait. */
+    private void signalSolved() {
+        _solvedTimer.restart();
     }
 
-    /** Draw SQ on G. */
-    private void drawSquare(Graphics2D g, Sq sq) {
-        int px = cx(sq.x), py = cy(sq.y);
-        if (sq.group() >= 0) {
-            g.setColor(groupColor(sq.group()));
-            g.fillRect(px + GRID_LINE_WIDTH, py + GRID_LINE_WIDTH - CELL_SIDE,
-                       CELL_SIDE - GRID_LINE_WIDTH,
-                       CELL_SIDE - GRID_LINE_WIDTH);
-        }
-        drawArrow(g, sq);
-        if (sq.predecessor() == null && sq.sequenceNum() != 1) {
-            g.setColor(ARROW_COLOR);
-            g.fillOval(px + 3 * TEXT_OFFSET, py - 4 * TEXT_OFFSET,
-                       DOT_SIZE, DOT_SIZE);
-        }
-        if (sq.sequenceNum() != 0) {
-            g.setColor(numberColor(sq));
-            g.setFont(NUM_FONT);
-        } else if (sq.group() > 0) {
-            g.setColor(NUM_COLOR);
-            g.setFont(GROUP_TEXT_FONT);
-        } else {
+    /** Turn all arrows by one step, ending the solved signal after a full
+     *  turn.  Called on the event-dispatch thread by _solvedTimer.  Ignores
+     *  ticks delivered after the signal was cancelled by update. */
+    private synchronized void bumpArrows() {
+        if (!_solvedTimer.isRunning()) {
             return;
         }
-        g.drawString(sq.seqText(),
-                     px + TEXT_OFFSET, py - CELL_SIDE / 2 - 2 * TEXT_OFFSET);
-    }
-
-    /** Give a visual signal that the puzzle is solved. */
-    private void signalSolved() {
-        while (true) {
-            try {
-                Thread.sleep(ARROW_BUMP_INTERVAL);
-            } catch (InterruptedException excp) {
-                /* Ignore InterruptedException. */
-            }
-            synchronized (this) {
-                _dirBump = (_dirBump + 1) % 8;
-                repaint();
-                if (_dirBump == 0) {
-                    break;
-                }
-            }
+        _dirBump = (_dirBump + 1) % 8;
+        if (_dirBump == 0) {
+            _solvedTimer.stop();
         }
+        repaint();
     }
 
     @Override
     public synchronized void paintComponent(Graphics2D g) {
-        g.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
-        g.setColor(BACKGROUND_COLOR);
-        g.fillRect(0, 0, _boardWidth, _boardHeight);
-
-        drawGrid(g);
-        int n = 2;
-
-        for (Sq sq : _model) {
-            drawSquare(g, sq);
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, me.getWidth(), me.getHeight());
         }
+        g.setColor(BoardPainter.BACKGROUND_COLOR);
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        if (_model == null) {
+            return;
+        }
+        g.translate(-_viewX, -_viewY);
+        clip.translate(_viewX, _viewY);
+        _painter.paint(g, _model, _dirBump,
+                       clip.intersection(new Rectangle(0, 0, _boardWidth,
+                                                       _boardHeight)),
+                       _posn);
+        g.translate(_viewX, _viewY);
     }
 
     /** Handle mouse pressed event E, recording the starting square of a
@@ -249,6 +162,7 @@ class BoardWidget extends Pad {
     private synchronized void mousePressed(String unused, MouseEvent e) {
         int x = x(e), y = y(e);
         if (e.getButton() != MouseEvent.BUTTON1) {
+            _panStart = new Point(e.getX() + _viewX, e.getY() + _viewY);
             return;
         }
         if (_model.isCell(x, y)) {
@@ -263,72 +177,119 @@ class BoardWidget extends Pad {
     private synchronized void mouseReleased(String unused, MouseEvent e) {
         int x = x(e), y = y(e);
         if (e.getButton() != MouseEvent.BUTTON1) {
+            _panStart = null;
             return;
         }
         Place endPlace;
         if (_connStart != null) {
             if (_model.isCell(x, y)) {
                 Sq sq0 = _model.get(_connStart), sq1 = _model.get(x, y);
-                _commands.offer(String.format("CONN %d %d %d %d",
-                                              sq0.x, sq0.y, x, y));
+                _commands.accept(new Command().set(Verb.CONN, false,
+                                                   sq0.x, sq0.y, x, y));
             } else {
-                _commands.offer(String.format("BRK %d %d",
-                                              _connStart.x, _connStart.y));
+                _commands.accept(new Command().set(Verb.BRK, false,
+                                                   _connStart.x,
+                                                   _connStart.y));
             }
         }
         _connStart = null;
     }
 
+    /** Handle mouse dragged event E, panning if a pan is in progress. */
+    private synchronized void mouseDragged(String unused, MouseEvent e) {
+        if (_panStart != null) {
+            _viewX = _panStart.x - e.getX();
+            _viewY = _panStart.y - e.getY();
+            clampView();
+            repaint();
+        }
+    }
+
     /** Return the column index of the square on which EVENT occurred. */
     private int x(MouseEvent event) {
-        return (int) Math.floorDiv(event.getX() - OFFSET, CELL_SEP);
+        return _painter.column(event.getX() + _viewX);
     }
 
     /** Return the row index of the square on which EVENT occurred. */
     private int y(MouseEvent event) {
-        return _height - 1
-            - (int) Math.floorDiv(event.getY() - OFFSET, CELL_SEP);
-    }
-
-    /** Return the color associated with group N. */
-    private Color groupColor(int n) {
-        if (n == 0) {
-            return NUMBERED_SQUARE_COLOR;
-        } else {
-            return BG_COLORS[(n - 1) % (BG_COLORS.length - 1) + 1];
-        }
+        return _painter.row(event.getY() + _viewY, _height);
     }
 
     /** Revise the displayed board according to MODEL. */
     void update(Model model) {
+        boolean solved;
         synchronized (this) {
+            _solvedTimer.stop();
+            Model old = _model;
             _model = new Model(model);
+            /* Copies of a puzzle share its solution array, so a new one
+             * means a new puzzle, whose arrows all differ. */
+            if (old == null || _dirBump != 0
+                || old.solution() != _model.solution()) {
+                _shownNum = new int[_model.size()];
+                _shownPosn = new int[_model.size()];
+                _shownState = new int[_model.size()];
+                _posn = new int[_model.size()];
+                recordChanges();
+                repaint();
+            } else {
+                for (Sq sq : recordChanges()) {
+                    Rectangle r = _painter.bounds(sq.x, sq.y, _height);
+                    repaint(r.x - _viewX, r.y - _viewY, r.width, r.height);
+                }
+            }
             _dirBump = 0;
+            solved = _model.solved();
         }
 
-        repaint();
-        if (_model.solved()) {
+        if (solved) {
             signalSolved();
         }
     }
 
-    /** Return pixel coordinates of vertical board coordinate Y relative
-     *  to window. */
-    private int cy(int y) {
-        return OFFSET + (_height - y) * CELL_SEP;
+    /** Record the appearance of each square of _model: its sequence
+     *  number, group, position in its group, and link state, which
+     *  determine how it is drawn (apart from its arrow, which is fixed for
+     *  each puzzle, and so is not compared), and so its text (see
+     *  Sq.seqText).  Return the squares whose appearance changed since the
+     *  last call, which must have been for the same puzzle. */
+    private ArrayList<Sq> recordChanges() {
+        int h = _model.height();
+        BoardPainter.chainPositions(_model, _posn);
+        ArrayList<Sq> changed = new ArrayList<>();
+        for (Sq sq : _model) {
+            int c = sq.x * h + sq.y;
+            int num = sq.sequenceNum();
+            int posn = num == 0 ? _posn[c] : 0;
+            int state = (sq.group() << 3)
+                | (sq.hasFixedNum() ? 4 : 0)
+                | (sq.predecessor() == null ? 2 : 0)
+                | (sq.successor() == null ? 1 : 0);
+            if (state != _shownState[c] || num != _shownNum[c]
+                || posn != _shownPosn[c]) {
+                _shownNum[c] = num;
+                _shownPosn[c] = posn;
+                _shownState[c] = state;
+                changed.add(sq);
+            }
+        }
+        return changed;
     }
 
-    /** Return pixel coordinates of horizontal board coordinate X relative
-     *  to window. */
-    private int cx(int x) {
-        return OFFSET + x * CELL_SEP;
-    }
+    /** Draws the board at the current zoom. */
+    private BoardPainter _painter = new BoardPainter(CELL_SIDE);
+    /** Position in the board of the upper-left corner of the viewport
+     *  (pixels). */
+    private int _viewX, _viewY;
+    /** Position in the board of the pointer when the current pan started,
+     *  or null if not panning. */
+    private Point _panStart;
 
     /** Number of height and of columns. */
     private int _height, _width;
 
-    /** Queue on which to post commands (from mouse clicks). */
-    private ArrayBlockingQueue<String> _commands;
+    /** Receives commands (from mouse clicks). */
+    private Consumer<Command> _commands;
 
     /** Current model being displayed. */
     private Model _model;
@@ -339,4 +300,19 @@ class BoardWidget extends Pad {
     /** Amount to add to direction value for each displayed arrow (used for
      *  special effect signaling completion. */
     private int _dirBump;
+    /** The sequence number of each displayed square, indexed by
+     *  x * height + y (see recordChanges). */
+    private int[] _shownNum;
+    /** The position in its group of each displayed square without a
+     *  sequence number, and otherwise 0, indexed as for _shownNum. */
+    private int[] _shownPosn;
+    /** The encoded group and link state of each displayed square, indexed
+     *  as for _shownNum. */
+    private int[] _shownState;
+    /** The position of each square of _model in its chain of connected
+     *  squares, indexed as for _shownNum, as set by recordChanges and
+     *  used in painting. */
+    private int[] _posn;
+    /** Turns the arrows while signaling completion. */
+    private final Timer _solvedTimer;
 }
@@ -0,0 +1,398 @@
+package signpost;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import signpost.Model.Sq;
+
+/** A View that broadcasts the changes to a board to any number of
+ *  read-only subscribers (spectators), optionally passing each update on
+ *  to another View as well.  Each update is encoded once as a message
+ *  listing just the squares whose state changed (a DELTA), and is queued
+ *  in a bounded ring buffer for each subscriber.  Messages are delivered
+ *  on an Executor, so the thread updating the view never waits for a
+ *  subscriber.  A subscriber whose buffer overflows loses its queued
+ *  messages and is sent a SNAPSHOT of the whole board instead, as are new
+ *  subscribers and all subscribers when a new puzzle starts.  A
+ *  subscriber should ignore any DELTA whose version is not greater than
+ *  that of the last SNAPSHOT it received.
+ *  <p>
+ *  Every message starts with its kind (a byte: DELTA or SNAPSHOT), a
+ *  version number (a long, increasing by one with each update), and a
+ *  byte that is 1 iff the board is solved.  A SNAPSHOT continues with the
+ *  width and height (shorts), the arrow direction of each square (a byte
+ *  each, in order of cell number x * height + y), and then the states of
+ *  all squares.  A DELTA continues with the number of changed squares (an
+ *  int) and their states.  The state of a square is its cell number, the
+ *  cell number of its successor (-1 if none), its sequence number (0 if
+ *  none), and its group (as for Model.Sq.group), all ints, followed by a
+ *  byte that is 1 iff its number is fixed.  All numbers are big-endian.
+ *  @author Abel Feleke
+ */
+class BroadcastView implements View {
+
+    /** Kind of a message listing changed squares. */
+    static final byte DELTA = 1;
+    /** Kind of a message describing the whole board. */
+    static final byte SNAPSHOT = 2;
+    /** Default number of messages buffered per subscriber. */
+    static final int DEFAULT_BUFFER = 64;
+
+    /** Size of the state of one square in a message. */
+    private static final int SQUARE_SIZE = 17;
+    /** Size of the common message header. */
+    private static final int HEADER_SIZE = 10;
+
+    /** A view that forwards updates to NEXT (if non-null) and delivers
+     *  messages to subscribers using EXECUTOR. */
+    BroadcastView(View next, Executor executor) {
+        _next = next;
+        _executor = executor;
+    }
+
+    /** A view that forwards updates to NEXT (if non-null) and delivers
+     *  messages to subscribers on daemon threads of its own. */
+    BroadcastView(View next) {
+        this(next, Executors.newCachedThreadPool((r) -> {
+            Thread t = new Thread(r, "spectators");
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    @Override
+    public void update(Model model) {
+        ByteBuffer msg;
+        synchronized (this) {
+            msg = record(model);
+        }
+        if (msg != null) {
+            for (Subscriber sub : _subscribers) {
+                sub.offer(msg);
+            }
+        }
+        if (_next != null) {
+            _next.update(model);
+        }
+    }
+
+    /** Add a subscriber that receives messages through SINK, buffering at
+     *  most CAPACITY of them before resynchronizing.  SINK is called on
+     *  one thread at a time, first with a snapshot of the current board,
+     *  if there is one.  Each message is a read-only buffer whose contents
+     *  lie between its position and limit.  If SINK throws an exception,
+     *  the subscriber is removed.  Returns the subscriber, which may be
+     *  passed to unsubscribe. */
+    Subscriber subscribe(Consumer<ByteBuffer> sink, int capacity) {
+        Subscriber sub = new Subscriber(sink, capacity);
+        synchronized (this) {
+            _subscribers.add(sub);
+            if (_solution != null) {
+                sub.resync(snapshot());
+            }
+        }
+        return sub;
+    }
+
+    /** Stop sending messages to SUB. */
+    void unsubscribe(Subscriber sub) {
+        _subscribers.remove(sub);
+    }
+
+    /** Return the number of subscribers. */
+    int subscribers() {
+        return _subscribers.size();
+    }
+
+    /** Return a sink that writes each message to OUT, preceded by its
+     *  length (an int).  If OUT fails, the sink throws an
+     *  UncheckedIOException, unsubscribing it. */
+    static Consumer<ByteBuffer> streamSink(OutputStream out) {
+        DataOutputStream data = new DataOutputStream(out);
+        return (msg) -> {
+            try {
+                byte[] bytes = new byte[msg.remaining()];
+                msg.get(bytes);
+                data.writeInt(bytes.length);
+                data.write(bytes);
+                data.flush();
+            } catch (IOException excp) {
+                throw new UncheckedIOException(excp);
+            }
+        };
+    }
+
+    /** Accept spectators connecting to PORT on the local host on a daemon
+     *  thread, subscribing each to a stream of messages as for
+     *  streamSink. */
+    void listen(int port) throws IOException {
+        ServerSocket listener =
+            new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (true) {
+                try {
+                    Socket conn = listener.accept();
+                    conn.shutdownInput();
+                    subscribe(streamSink(conn.getOutputStream()),
+                              DEFAULT_BUFFER);
+                } catch (IOException excp) {
+                    /* Ignore failed connection. */
+                }
+            }
+        }, "spectator-listener");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /** Record the state of MODEL, returning the message describing the
+     *  change from the previous state, or null if there is none. */
+    private ByteBuffer record(Model model) {
+        if (model.solution() != _solution) {
+            int n = model.size();
+            _solution = model.solution();
+            _width = model.width();
+            _height = model.height();
+            _dirs = new byte[n];
+            _nextCell = new int[n];
+            _seq = new int[n];
+            _group = new int[n];
+            _fixed = new boolean[n];
+            for (Sq sq : model) {
+                _dirs[cell(sq)] = (byte) sq.direction();
+            }
+            save(model);
+            _version += 1;
+            ByteBuffer msg = snapshot();
+            for (Subscriber sub : _subscribers) {
+                sub.resync(msg);
+            }
+            return null;
+        }
+        ByteBuffer msg = ByteBuffer.allocate(HEADER_SIZE + 4
+                                             + SQUARE_SIZE * model.size());
+        msg.put(DELTA).putLong(_version + 1).put((byte) 0).putInt(0);
+        int count = 0;
+        for (Sq sq : model) {
+            int c = cell(sq), next = cell(sq.successor());
+            if (next != _nextCell[c] || sq.sequenceNum() != _seq[c]
+                || sq.group() != _group[c] || sq.hasFixedNum() != _fixed[c]) {
+                count += 1;
+                putSquare(msg, c, next, sq.sequenceNum(), sq.group(),
+                          sq.hasFixedNum());
+            }
+        }
+        boolean solved = model.solved();
+        if (count == 0 && solved == _solved) {
+            return null;
+        }
+        save(model);
+        _version += 1;
+        msg.put(9, (byte) (solved ? 1 : 0)).putInt(HEADER_SIZE, count);
+        msg.flip();
+        return msg.asReadOnlyBuffer();
+    }
+
+    /** Save the state of MODEL's squares. */
+    private void save(Model model) {
+        for (Sq sq : model) {
+            int c = cell(sq);
+            _nextCell[c] = cell(sq.successor());
+            _seq[c] = sq.sequenceNum();
+            _group[c] = sq.group();
+            _fixed[c] = sq.hasFixedNum();
+        }
+        _solved = model.solved();
+    }
+
+    /** Return a SNAPSHOT message for the last recorded state. */
+    private ByteBuffer snapshot() {
+        int n = _seq.length;
+        ByteBuffer msg =
+            ByteBuffer.allocate(HEADER_SIZE + 4 + n * (1 + SQUARE_SIZE));
+        msg.put(SNAPSHOT).putLong(_version).put((byte) (_solved ? 1 : 0));
+        msg.putShort((short) _width).putShort((short) _height);
+        msg.put(_dirs);
+        for (int c = 0; c < n; c += 1) {
+            putSquare(msg, c, _nextCell[c], _seq[c], _group[c], _fixed[c]);
+        }
+        msg.flip();
+        return msg.asReadOnlyBuffer();
+    }
+
+    /** Add the state of square CELL, whose successor is NEXT, sequence
+     *  number SEQ, and group GROUP, and whose number is fixed iff FIXED, to
+     *  MSG. */
+    private static void putSquare(ByteBuffer msg, int cell, int next,
+                                  int seq, int group, boolean fixed) {
+        msg.putInt(cell).putInt(next).putInt(seq).putInt(group)
+            .put((byte) (fixed ? 1 : 0));
+    }
+
+    /** Return the cell number of SQ, or -1 if SQ is null. */
+    private int cell(Sq sq) {
+        return sq == null ? -1 : sq.x * _height + sq.y;
+    }
+
+    /** A subscriber to a BroadcastView, with its own buffer of pending
+     *  messages. */
+    final class Subscriber {
+
+        /** A subscriber delivering to SINK, buffering up to CAPACITY
+         *  messages. */
+        private Subscriber(Consumer<ByteBuffer> sink, int capacity) {
+            _sink = sink;
+            _ring = new ByteBuffer[capacity];
+        }
+
+        /** Return the number of times I have been resynchronized after
+         *  falling behind. */
+        synchronized int resyncs() {
+            return _resyncs;
+        }
+
+        /** Queue MSG for delivery, replacing all pending messages with a
+         *  snapshot if my buffer is full. */
+        private void offer(ByteBuffer msg) {
+            synchronized (this) {
+                if (_stale) {
+                    return;
+                } else if (_count == _ring.length) {
+                    _resyncs += 1;
+                    clear();
+                    _stale = true;
+                } else {
+                    enqueue(msg);
+                }
+            }
+            schedule();
+        }
+
+        /** Replace all pending messages with MSG, a snapshot. */
+        private void resync(ByteBuffer msg) {
+            synchronized (this) {
+                clear();
+                enqueue(msg);
+            }
+            schedule();
+        }
+
+        /** Discard all pending messages. */
+        private void clear() {
+            Arrays.fill(_ring, null);
+            _count = 0;
+            _stale = false;
+        }
+
+        /** Add MSG to my buffer, which must have room. */
+        private void enqueue(ByteBuffer msg) {
+            _ring[(_first + _count) % _ring.length] = msg;
+            _count += 1;
+        }
+
+        /** Arrange to deliver my pending messages, unless that is already
+         *  arranged. */
+        private void schedule() {
+            synchronized (this) {
+                if (_scheduled || (_count == 0 && !_stale)) {
+                    return;
+                }
+                _scheduled = true;
+            }
+            _executor.execute(this::drain);
+        }
+
+        /** Deliver pending messages until there are none, unsubscribing
+         *  me if my sink fails. */
+        private void drain() {
+            while (true) {
+                ByteBuffer msg;
+                boolean stale;
+                synchronized (this) {
+                    stale = _stale;
+                    if (stale) {
+                        _stale = false;
+                        msg = null;
+                    } else if (_count == 0) {
+                        _scheduled = false;
+                        return;
+                    } else {
+                        msg = _ring[_first];
+                        _ring[_first] = null;
+                        _first = (_first + 1) % _ring.length;
+                        _count -= 1;
+                    }
+                }
+                if (stale) {
+                    synchronized (BroadcastView.this) {
+                        msg = snapshot();
+                    }
+                }
+                try {
+                    _sink.accept(msg.duplicate());
+                } catch (RuntimeException excp) {
+                    unsubscribe(this);
+                    synchronized (this) {
+                        clear();
+                        _scheduled = false;
+                    }
+                    return;
+                }
+            }
+        }
+
+        /** Receives my messages. */
+        private final Consumer<ByteBuffer> _sink;
+        /** Pending messages, starting at _first. */
+        private final ByteBuffer[] _ring;
+        /** Index of the first pending message in _ring. */
+        private int _first;
+        /** Number of pending messages. */
+        private int _count;
+        /** True iff I have fallen behind and must next receive a
+         *  snapshot of the current board. */
+        private boolean _stale;
+        /** True iff a task to drain my messages has been scheduled. */
+        private boolean _scheduled;
+        /** Number of resynchronizations. */
+        private int _resyncs;
+    }
+
+    /** View to which updates are forwarded, or null. */
+    private final View _next;
+    /** Runs deliveries. */
+    private final Executor _executor;
+    /** Current subscribers. */
+    private final CopyOnWriteArrayList<Subscriber> _subscribers =
+        new CopyOnWriteArrayList<>();
+
+    /** Solution of the puzzle last recorded, identifying it. */
+    private int[][] _solution;
+    /** Dimensions of the puzzle last recorded. */
+    private int _width, _height;
+    /** Arrow directions, indexed by cell number. */
+    private byte[] _dirs;
+    /** Recorded successor cell numbers (-1 if none), indexed by cell
+     *  number. */
+    private int[] _nextCell;
+    /** Recorded sequence numbers, indexed by cell number. */
+    private int[] _seq;
+    /** Recorded group numbers, indexed by cell number. */
+    private int[] _group;
+    /** Recorded fixed-number flags, indexed by cell number. */
+    private boolean[] _fixed;
+    /** True iff the recorded board is solved. */
+    private boolean _solved;
+    /** Version of the last recorded state. */
+    private long _version;
+}
@@ -0,0 +1,127 @@
+package signpost;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static signpost.Utils.tr;
+
+/** Tests of the BroadcastView class.
+ *  @author Abel Feleke
+ */
+public class BroadcastViewTests {
+
+    @Test
+    public void deltaTest() {
+        ArrayList<ByteBuffer> received = new ArrayList<>();
+        BroadcastView view = new BroadcastView(null, Runnable::run);
+        view.subscribe(received::add, 4);
+        Model model = new Model(tr(SOLN1));
+        view.update(model);
+        assertEquals("initial snapshot", 1, received.size());
+        ByteBuffer snap = received.get(0);
+        assertEquals("snapshot kind", BroadcastView.SNAPSHOT, snap.get());
+        long version = snap.getLong();
+        assertEquals("unsolved", 0, snap.get());
+        assertEquals("width", 4, snap.getShort());
+        assertEquals("height", 4, snap.getShort());
+        view.update(model);
+        assertEquals("no change, no message", 1, received.size());
+
+        model.solnNumToSq(5).connect(model.solnNumToSq(6));
+        view.update(model);
+        assertEquals("one delta", 2, received.size());
+        ByteBuffer delta = received.get(1);
+        assertEquals("delta kind", BroadcastView.DELTA, delta.get());
+        assertEquals("next version", version + 1, delta.getLong());
+        assertEquals("unsolved", 0, delta.get());
+        assertEquals("two squares changed", 2, delta.getInt());
+        assertEquals("message size", 2 * 17, delta.remaining());
+        int cellA = delta.getInt(), nextA = delta.getInt();
+        delta.position(delta.position() + 9);
+        int cellB = delta.getInt(), nextB = delta.getInt();
+        if (nextA == -1) {
+            assertEquals("5 -> 6", cellA, nextB);
+        } else {
+            assertEquals("5 -> 6", cellB, nextA);
+            assertEquals("6 has no successor", -1, nextB);
+        }
+
+        model.solve();
+        view.update(model);
+        ByteBuffer last = received.get(received.size() - 1);
+        assertEquals("solved", 1, last.get(9));
+    }
+
+    @Test
+    public void lateSubscriberTest() {
+        BroadcastView view = new BroadcastView(null, Runnable::run);
+        Model model = new Model(tr(SOLN1));
+        view.update(model);
+        ArrayList<ByteBuffer> received = new ArrayList<>();
+        view.subscribe(received::add, 4);
+        assertEquals("snapshot on subscribing", 1, received.size());
+        assertEquals("snapshot kind", BroadcastView.SNAPSHOT,
+                     received.get(0).get(0));
+    }
+
+    @Test
+    public void overflowTest() {
+        ArrayList<Runnable> tasks = new ArrayList<>();
+        BroadcastView view = new BroadcastView(null, tasks::add);
+        ArrayList<ByteBuffer> slow = new ArrayList<>();
+        BroadcastView.Subscriber sub = view.subscribe(slow::add, 2);
+        Model model = new Model(tr(SOLN1));
+        view.update(model);
+        for (int k = 1; k < 6; k += 1) {
+            model.solnNumToSq(k).connect(model.solnNumToSq(k + 1));
+            view.update(model);
+        }
+        assertTrue("game thread never waits", slow.isEmpty());
+        assertEquals("one resync", 1, sub.resyncs());
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+        assertEquals("only a fresh snapshot", 1, slow.size());
+        ByteBuffer snap = slow.get(0);
+        assertEquals("snapshot kind", BroadcastView.SNAPSHOT, snap.get(0));
+        assertEquals("latest version", 6, snap.getLong(1));
+    }
+
+    @Test
+    public void streamTest() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ArrayList<ByteBuffer> received = new ArrayList<>();
+        BroadcastView view = new BroadcastView(null, Runnable::run);
+        view.subscribe(BroadcastView.streamSink(out), 4);
+        view.subscribe(received::add, 4);
+        view.update(new Model(tr(SOLN1)));
+        ByteBuffer bytes = ByteBuffer.wrap(out.toByteArray());
+        assertEquals("length prefix", received.get(0).remaining(),
+                     bytes.getInt());
+        assertEquals("same message", received.get(0), bytes);
+    }
+
+    @Test
+    public void failedSinkTest() {
+        BroadcastView view = new BroadcastView(null, Runnable::run);
+        view.subscribe((msg) -> {
+            throw new IllegalStateException();
+        }, 4);
+        assertEquals("subscribed", 1, view.subscribers());
+        view.update(new Model(tr(SOLN1)));
+        assertEquals("unsubscribed", 0, view.subscribers());
+    }
+
+    /** A 4x4 solution, transposed by tr(), as in ModelTests. */
+    private static final int[][] SOLN1 = {
+        { 1, 13, 3, 2 },
+        { 12, 4, 8, 15 },
+        { 5, 9, 7, 14 },
+        { 11, 6, 10, 16 }
+    };
+
+}
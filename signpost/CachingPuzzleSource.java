@@ -0,0 +1,85 @@
+package signpost;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static signpost.Utils.*;
+
+/** A PuzzleSource that memoizes the puzzles of another PuzzleSource in a
+ *  (possibly shared) PuzzleCache.  The K-th puzzle requested after seeding
+ *  with S is the one the underlying source produces when seeded with
+ *  puzzleSeed(S, K), and is cached under that seed and its type if it is
+ *  reproducible (see PuzzleSource.getPuzzle(int, int, boolean, Consumer)).
+ *  Thus, sessions that replay the same seeds and types share generated
+ *  puzzles, but a puzzle cut short by its deadline or shaped by a time
+ *  budget is never served in place of the one the seed would give with
+ *  more time.
+ *  @author Abel Feleke
+ */
+class CachingPuzzleSource implements PuzzleSource {
+
+    /** A source that takes its puzzles from SOURCE and caches them in
+     *  CACHE, initially seeded with SEED. */
+    CachingPuzzleSource(PuzzleSource source, PuzzleCache cache, long seed) {
+        _source = source;
+        _cache = cache;
+        _seed = seed;
+    }
+
+    @Override
+    public Model getPuzzle(int width, int height, boolean allowFreeEnds) {
+        long seed = nextSeed();
+        Model puzzle = _cache.get(seed, width, height, allowFreeEnds);
+        if (puzzle == null) {
+            synchronized (_source) {
+                _source.setSeed(seed);
+                puzzle = _source.getPuzzle(width, height, allowFreeEnds,
+                                           (p) -> _cache.put(seed, p,
+                                                             allowFreeEnds));
+            }
+        }
+        return puzzle;
+    }
+
+    @Override
+    public CompletableFuture<Model> getPuzzleAsync(int width, int height,
+                                                   boolean allowFreeEnds,
+                                                   Duration deadline) {
+        long seed = nextSeed();
+        Model puzzle = _cache.get(seed, width, height, allowFreeEnds);
+        if (puzzle != null) {
+            return CompletableFuture.completedFuture(puzzle);
+        }
+        CompletableFuture<Model> result;
+        synchronized (_source) {
+            _source.setSeed(seed);
+            result = _source.getPuzzleAsync(width, height, allowFreeEnds,
+                                            deadline,
+                                            (p) -> _cache.put(seed, p,
+                                                              allowFreeEnds));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        _seed = seed;
+        _count = 0;
+    }
+
+    /** Return the seed for the next puzzle requested. */
+    private synchronized long nextSeed() {
+        long result = puzzleSeed(_seed, _count);
+        _count += 1;
+        return result;
+    }
+
+    /** Source of puzzles not in the cache. */
+    private final PuzzleSource _source;
+    /** Cache of generated puzzles. */
+    private final PuzzleCache _cache;
+    /** Current seed. */
+    private long _seed;
+    /** Number of puzzles requested since last seeded. */
+    private long _count;
+}
@@ -0,0 +1,213 @@
+package signpost;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import signpost.Model.Sq;
+
+import static signpost.Utils.*;
+
+/** An anytime minimizer of the fixed numbers ("clues") of a puzzle.  It
+ *  starts from a puzzle whose solution PuzzleGenerator.extendSimple can
+ *  find, and repeatedly tries to remove clues while keeping that property.
+ *  At any time, best() yields the puzzle with the fewest clues found so
+ *  far.  Minimization stops when its time budget runs out, when stop() is
+ *  called, or when repeated attempts fail to make further progress.
+ *  <p>
+ *  Each round first removes clues greedily in random order, as does
+ *  PuzzleGenerator.trimFixed.  Once no single clue can be removed, it
+ *  tries adding a random clue and then removing as many as possible,
+ *  keeping the result if it has fewer clues than before.
+ *  @author Abel Feleke
+ */
+class ClueMinimizer {
+
+    /** Number of consecutive unsuccessful rounds, per square, after which
+     *  minimization gives up. */
+    static final int STALL_ROUNDS = 2;
+
+    /** A minimizer for the clues of PUZZLE, which must be uniquely solvable
+     *  by PuzzleGenerator.extendSimple, using random seed SEED, and running
+     *  for at most BUDGET after it starts. */
+    ClueMinimizer(Model puzzle, long seed, Duration budget) {
+        _work = new Model(puzzle.solution());
+        _random = new Random(seed);
+        _budget = nanos(budget);
+        _last = puzzle.size();
+        BitSet fixed = new BitSet(_last + 1);
+        for (Sq sq : puzzle) {
+            if (sq.hasFixedNum()) {
+                fixed.set(puzzle.solution()[sq.x][sq.y]);
+            }
+        }
+        _best = new Clues(fixed);
+    }
+
+    /** Return a new copy of the puzzle with the fewest clues found so far,
+     *  with all connections between its fixed numbers made. */
+    Model best() {
+        return toModel(_best.fixed);
+    }
+
+    /** Return the number of clues in the puzzle with the fewest clues
+     *  found so far. */
+    int clues() {
+        return _best.count;
+    }
+
+    /** Return a future that yields best() once minimization stops. */
+    CompletableFuture<Model> result() {
+        return _result;
+    }
+
+    /** Stop minimizing as soon as possible. */
+    void stop() {
+        _stopped = true;
+    }
+
+    /** Minimize clues until out of time, stopped, or stalled, and then
+     *  complete result(). */
+    void run() {
+        try {
+            _deadline = System.nanoTime() + _budget;
+            BitSet fixed = (BitSet) _best.fixed.clone();
+            removeClues(fixed);
+            int stalls = 0;
+            while (stalls < STALL_ROUNDS * _last && !timeUp()
+                   && fixed.cardinality() < _last) {
+                BitSet trial = (BitSet) fixed.clone();
+                trial.set(randomUnfixed(trial));
+                removeClues(trial);
+                if (trial.cardinality() < fixed.cardinality()) {
+                    fixed = trial;
+                    publish(fixed);
+                    stalls = 0;
+                } else {
+                    stalls += 1;
+                }
+            }
+            _result.complete(best());
+        } catch (RuntimeException excp) {
+            _result.completeExceptionally(excp);
+        }
+    }
+
+    /** Remove clues from FIXED, in random order, for as long as doing so
+     *  keeps the puzzle solvable and time remains, publishing each
+     *  improvement on the best puzzle so far. */
+    private void removeClues(BitSet fixed) {
+        ArrayList<Integer> candidates = new ArrayList<>();
+        boolean changed;
+        do {
+            changed = false;
+            candidates.clear();
+            for (int n = fixed.nextSetBit(2); n > 0 && n < _last;
+                 n = fixed.nextSetBit(n + 1)) {
+                candidates.add(n);
+            }
+            Collections.shuffle(candidates, _random);
+            for (int n : candidates) {
+                if (timeUp()) {
+                    return;
+                }
+                fixed.clear(n);
+                if (solvable(fixed)) {
+                    changed = true;
+                    if (fixed.cardinality() < _best.count) {
+                        publish(fixed);
+                    }
+                } else {
+                    fixed.set(n);
+                }
+            }
+        } while (changed);
+    }
+
+    /** Return a random sequence number (other than the first or last) that
+     *  is not in FIXED. */
+    private int randomUnfixed(BitSet fixed) {
+        int free = _last - fixed.cardinality();
+        int k = _random.nextInt(free);
+        int n = fixed.nextClearBit(1);
+        for (; k > 0; k -= 1) {
+            n = fixed.nextClearBit(n + 1);
+        }
+        return n;
+    }
+
+    /** Return true iff PuzzleGenerator.extendSimple solves the puzzle whose
+     *  fixed numbers are FIXED. */
+    private boolean solvable(BitSet fixed) {
+        setClues(_work, fixed);
+        PuzzleGenerator.extendSimple(_work);
+        return _work.solved();
+    }
+
+    /** Restart MODEL and make its fixed numbers exactly those in FIXED. */
+    private void setClues(Model model, BitSet fixed) {
+        model.restart();
+        int[][] soln = model.solution();
+        for (Sq sq : model) {
+            int n = soln[sq.x][sq.y];
+            if (fixed.get(n) && !sq.hasFixedNum()) {
+                sq.setFixedNum(n);
+            } else if (!fixed.get(n) && sq.hasFixedNum()) {
+                sq.unfixNum();
+            }
+        }
+    }
+
+    /** Return a new puzzle with my solution whose clues are FIXED. */
+    private Model toModel(BitSet fixed) {
+        Model result = new Model(_work.solution());
+        setClues(result, fixed);
+        result.autoconnect();
+        return result;
+    }
+
+    /** Record FIXED as the best set of clues so far. */
+    private void publish(BitSet fixed) {
+        _best = new Clues((BitSet) fixed.clone());
+    }
+
+    /** Return true iff minimization should stop. */
+    private boolean timeUp() {
+        return _stopped || System.nanoTime() - _deadline > 0;
+    }
+
+    /** A set of clues and its size, which are published together. */
+    private static class Clues {
+        /** The clues whose sequence numbers are in FIXED, which must not be
+         *  modified afterwards. */
+        Clues(BitSet fixed) {
+            this.fixed = fixed;
+            count = fixed.cardinality();
+        }
+
+        /** Sequence numbers of the clues. */
+        private final BitSet fixed;
+        /** Number of clues. */
+        private final int count;
+    }
+
+    /** Model used to test sets of clues. */
+    private final Model _work;
+    /** Source of random choices. */
+    private final Random _random;
+    /** Time allowed for minimization, in nanoseconds. */
+    private final long _budget;
+    /** Number of squares (the last sequence number). */
+    private final int _last;
+    /** Deadline for minimization, as a System.nanoTime() value. */
+    private long _deadline;
+    /** The clues of the best puzzle so far. */
+    private volatile Clues _best;
+    /** True iff stop() has been called. */
+    private volatile boolean _stopped;
+    /** Yields the final best puzzle. */
+    private final CompletableFuture<Model> _result = new CompletableFuture<>();
+}
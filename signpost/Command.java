@@ -0,0 +1,332 @@
+package signpost;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** A reusable, decoded command (see CommandSource).  Decoding a command
+ *  copies its text into a buffer owned by the Command and parses the verb
+ *  and numeric operands in place, so that a Command may be refilled
+ *  indefinitely without creating new objects.  Verbs are case-insensitive.
+ *  @author Abel Feleke
+ */
+class Command {
+
+    /** The kinds of command.  EMPTY denotes a blank line, and BAD a line
+     *  that is not a valid command. */
+    enum Verb {
+        QUIT(0, "QUIT", "Q"), NEW(0, "NEW"), TYPE(2, "TYPE"),
+        SEED(1, "SEED"), CONN(4, "CONN", "C"), CONNS(4, "CONNS"),
+        BRK(2, "BRK", "B"),
+        RESTART(0, "RESTART"), UNDO(0, "UNDO", "U"), REDO(0, "REDO", "R"),
+        SOLVE(0, "SOLVE"), EMPTY(0), BAD(0);
+
+        /** A verb taking ARITY operands and spelled as any of NAMES. */
+        Verb(int arity, String... names) {
+            _arity = arity;
+            _names = new byte[names.length][];
+            for (int i = 0; i < names.length; i += 1) {
+                _names[i] = names[i].getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+
+        /** Return the number of operands I require. */
+        int arity() {
+            return _arity;
+        }
+
+        /** Number of operands. */
+        private final int _arity;
+        /** Spellings of this verb (upper case). */
+        private final byte[][] _names;
+    }
+
+    /** An empty command. */
+    Command() {
+        _verb = Verb.EMPTY;
+    }
+
+    /** Return my verb. */
+    Verb verb() {
+        return _verb;
+    }
+
+    /** Return the number of numeric operands. */
+    int count() {
+        return _count;
+    }
+
+    /** Return numeric operand #K (numbering from 0), which must fit in an
+     *  int. */
+    int intOperand(int k) {
+        return (int) _operands[k];
+    }
+
+    /** Return numeric operand #K (numbering from 0). */
+    long longOperand(int k) {
+        return _operands[k];
+    }
+
+    /** Return true iff the word FREE appeared among my operands. */
+    boolean free() {
+        return _free;
+    }
+
+    /** Return true iff I am a comment line (one starting with '#'). */
+    boolean comment() {
+        return _length > 0 && _text[0] == '#';
+    }
+
+    /** Set me to the command in the characters of LINE, returning me. */
+    Command decode(CharSequence line) {
+        int start, end;
+        for (start = 0; start < line.length() && line.charAt(start) <= ' ';
+             start += 1) {
+            /* Skip leading whitespace. */
+        }
+        for (end = line.length(); end > start && line.charAt(end - 1) <= ' ';
+             end -= 1) {
+            /* Skip trailing whitespace. */
+        }
+        reserve(end - start);
+        for (int i = start; i < end; i += 1) {
+            char c = line.charAt(i);
+            _text[i - start] = c < 0x80 ? upper((byte) c) : (byte) '?';
+        }
+        _length = end - start;
+        parse();
+        return this;
+    }
+
+    /** Set me to the command in the bytes of BUF at indices START up to
+     *  END, returning me.  Does not change the position of BUF. */
+    Command decode(ByteBuffer buf, int start, int end) {
+        while (start < end && space(buf.get(start))) {
+            start += 1;
+        }
+        while (end > start && space(buf.get(end - 1))) {
+            end -= 1;
+        }
+        reserve(end - start);
+        for (int i = start; i < end; i += 1) {
+            _text[i - start] = upper(buf.get(i));
+        }
+        _length = end - start;
+        parse();
+        return this;
+    }
+
+    /** Set me to the command VERB with numeric operands OPERANDS, followed
+     *  by the word FREE if FREE, returning me.  My text is the first
+     *  spelling of VERB followed by the operands, as decode would accept
+     *  it. */
+    Command set(Verb verb, boolean free, long... operands) {
+        _length = 0;
+        append(verb._names.length == 0 ? new byte[0] : verb._names[0]);
+        for (long operand : operands) {
+            append(SPACE);
+            append(Long.toString(operand).getBytes(StandardCharsets.US_ASCII));
+        }
+        if (free) {
+            append(SPACE);
+            append(FREE_WORD);
+        }
+        _verb = verb;
+        _free = free;
+        _count = operands.length;
+        if (_operands.length < _count) {
+            _operands = new long[Math.max(_count, 2 * _operands.length)];
+        }
+        System.arraycopy(operands, 0, _operands, 0, _count);
+        return this;
+    }
+
+    /** Set me to a copy of CMND, returning me. */
+    Command set(Command cmnd) {
+        reserve(cmnd._length);
+        System.arraycopy(cmnd._text, 0, _text, 0, cmnd._length);
+        _length = cmnd._length;
+        _verb = cmnd._verb;
+        _free = cmnd._free;
+        _count = cmnd._count;
+        if (_operands.length < _count) {
+            _operands = new long[cmnd._operands.length];
+        }
+        System.arraycopy(cmnd._operands, 0, _operands, 0, _count);
+        return this;
+    }
+
+    /** Return true iff CMND has the same verb, operands, and FREE word as
+     *  I do. */
+    boolean sameAs(Command cmnd) {
+        if (_verb != cmnd._verb || _free != cmnd._free
+            || _count != cmnd._count) {
+            return false;
+        }
+        for (int i = 0; i < _count; i += 1) {
+            if (_operands[i] != cmnd._operands[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Print my text (trimmed and in upper case) on OUT, followed by a
+     *  newline. */
+    void print(PrintStream out) {
+        out.write(_text, 0, _length);
+        out.println();
+    }
+
+    /** Return my text, trimmed and in upper case. */
+    @Override
+    public String toString() {
+        return new String(_text, 0, _length, StandardCharsets.UTF_8);
+    }
+
+    /** Return true iff C is an ASCII space or control character. */
+    private static boolean space(byte c) {
+        return c >= 0 && c <= ' ';
+    }
+
+    /** Return the upper-case equivalent of the ASCII character C. */
+    private static byte upper(byte c) {
+        return c >= 'a' && c <= 'z' ? (byte) (c - 'a' + 'A') : c;
+    }
+
+    /** Ensure that _text can hold at least N bytes. */
+    private void reserve(int n) {
+        if (_text.length < n) {
+            _text = new byte[Math.max(n, 2 * _text.length)];
+        }
+    }
+
+    /** Append BYTES to _text. */
+    private void append(byte[] bytes) {
+        if (_text.length < _length + bytes.length) {
+            _text = Arrays.copyOf(_text, Math.max(_length + bytes.length,
+                                                  2 * _text.length));
+        }
+        System.arraycopy(bytes, 0, _text, _length, bytes.length);
+        _length += bytes.length;
+    }
+
+    /** Set _verb, _operands, _count, and _free from _text. */
+    private void parse() {
+        _count = 0;
+        _free = false;
+        _verb = Verb.EMPTY;
+        int k = 0;
+        while (k < _length && !space(_text[k])) {
+            k += 1;
+        }
+        if (k == 0) {
+            return;
+        }
+        _verb = lookup(0, k);
+        if (_verb == Verb.BAD) {
+            return;
+        }
+        while (k < _length) {
+            while (k < _length && space(_text[k])) {
+                k += 1;
+            }
+            int start = k;
+            while (k < _length && !space(_text[k])) {
+                k += 1;
+            }
+            if (start == k) {
+                break;
+            } else if (matches(start, k, FREE_WORD)) {
+                _free = true;
+            } else if (!parseOperand(start, k)) {
+                _verb = Verb.BAD;
+                return;
+            }
+        }
+        if (_count < _verb.arity()
+            || (_verb == Verb.CONNS && _count % 2 != 0)) {
+            _verb = Verb.BAD;
+        } else if (_verb != Verb.SEED) {
+            for (int i = 0; i < _count; i += 1) {
+                if (_operands[i] != (int) _operands[i]) {
+                    _verb = Verb.BAD;
+                }
+            }
+        }
+    }
+
+    /** Return the verb spelled by _text[START .. END-1], or BAD if there
+     *  is none. */
+    private Verb lookup(int start, int end) {
+        for (Verb verb : VERBS) {
+            for (byte[] name : verb._names) {
+                if (matches(start, end, name)) {
+                    return verb;
+                }
+            }
+        }
+        return Verb.BAD;
+    }
+
+    /** Return true iff _text[START .. END-1] is WORD. */
+    private boolean matches(int start, int end, byte[] word) {
+        if (end - start != word.length) {
+            return false;
+        }
+        for (int i = 0; i < word.length; i += 1) {
+            if (_text[start + i] != word[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Record the decimal numeral _text[START .. END-1] as the next operand,
+     *  returning false if it is not a valid long numeral. */
+    private boolean parseOperand(int start, int end) {
+        boolean negative = _text[start] == '-';
+        if (negative || _text[start] == '+') {
+            start += 1;
+        }
+        if (start == end) {
+            return false;
+        }
+        long val = 0;
+        for (int i = start; i < end; i += 1) {
+            int d = _text[i] - '0';
+            if (d < 0 || d > 9 || val > (Long.MAX_VALUE - d) / 10) {
+                return false;
+            }
+            val = 10 * val + d;
+        }
+        if (_count == _operands.length) {
+            _operands = Arrays.copyOf(_operands, 2 * _count);
+        }
+        _operands[_count] = negative ? -val : val;
+        _count += 1;
+        return true;
+    }
+
+    /** All verbs, in order of lookup. */
+    private static final Verb[] VERBS = Verb.values();
+    /** A separator between words. */
+    private static final byte[] SPACE = { ' ' };
+    /** The operand denoting free ends. */
+    private static final byte[] FREE_WORD =
+        "FREE".getBytes(StandardCharsets.US_ASCII);
+
+    /** The text of the command, trimmed and in upper case. */
+    private byte[] _text = new byte[64];
+    /** Number of bytes of _text in use. */
+    private int _length;
+    /** My verb. */
+    private Verb _verb;
+    /** My numeric operands. */
+    private long[] _operands = new long[8];
+    /** Number of numeric operands. */
+    private int _count;
+    /** True iff FREE appeared as an operand. */
+    private boolean _free;
+}
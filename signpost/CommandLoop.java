@@ -0,0 +1,99 @@
+package signpost;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
+
+/** A non-blocking driver for a Controller, which receives command lines
+ *  from a Flow.Publisher as they become available, rather than blocking a
+ *  thread on a CommandSource.  Commands are carried out on whatever thread
+ *  delivers them (or, just after a new puzzle arrives, on the thread that
+ *  supplied it), one at a time and in order.  A CommandLoop requests one
+ *  command at a time, and only when it is ready to carry it out, so it
+ *  never buffers commands itself.  Completion of the publisher acts as a
+ *  QUIT command.  GameServer drives its sessions this way.
+ *  @author Abel Feleke
+ */
+class CommandLoop implements Flow.Subscriber<CharSequence> {
+
+    /** A loop driving CONTROLLER, which must not already be solving a
+     *  puzzle.  CONTROLLER's own CommandSource is not used. */
+    CommandLoop(Controller controller) {
+        _controller = controller;
+    }
+
+    /** Return a future that completes when play has ended, either because
+     *  of a QUIT command or because the publisher completed, or
+     *  exceptionally if an error occurred. */
+    CompletableFuture<Void> finished() {
+        return _finished;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        _subscription = subscription;
+        then(_controller::startPuzzleAsync);
+    }
+
+    @Override
+    public void onNext(CharSequence line) {
+        then(() -> execute(line));
+    }
+
+    @Override
+    public void onError(Throwable excp) {
+        _pending.whenComplete((v, e) -> _finished.completeExceptionally(excp));
+    }
+
+    @Override
+    public void onComplete() {
+        then(() -> execute("QUIT"));
+    }
+
+    /** Arrange for STEP to be performed after all previously received
+     *  commands, and when the future it returns completes, to request
+     *  another command if play continues. */
+    private void then(Supplier<CompletableFuture<Void>> step) {
+        _pending = _pending.thenCompose((v) -> step.get());
+        _pending.whenComplete((v, excp) -> {
+            if (excp != null) {
+                _subscription.cancel();
+                _finished.completeExceptionally(excp);
+            } else if (!_controller.solving()) {
+                _subscription.cancel();
+                _finished.complete(null);
+            } else {
+                _controller.updateView();
+                _subscription.request(1);
+            }
+        });
+    }
+
+    /** Carry out the command LINE, returning a future that completes when
+     *  the Controller is ready for another.  Comment lines (starting with
+     *  '#') are ignored, as by a TestSource. */
+    private CompletableFuture<Void> execute(CharSequence line) {
+        if (!_controller.solving() || _command.decode(line).comment()
+            || _controller.execute(_command)
+            || !_controller.solving()) {
+            return DONE;
+        }
+        return _controller.startPuzzleAsync();
+    }
+
+    /** A completed future. */
+    private static final CompletableFuture<Void> DONE =
+        CompletableFuture.completedFuture(null);
+
+    /** The Controller I drive. */
+    private final Controller _controller;
+    /** The subscription supplying my commands. */
+    private Flow.Subscription _subscription;
+    /** Completes when all commands received so far have been carried
+     *  out. */
+    private CompletableFuture<Void> _pending = DONE;
+    /** Completes when play ends. */
+    private final CompletableFuture<Void> _finished = new CompletableFuture<>();
+    /** Holds the command being carried out. */
+    private final Command _command = new Command();
+}
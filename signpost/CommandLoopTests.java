@@ -0,0 +1,81 @@
+package signpost;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the CommandLoop class.
+ *  @author Abel Feleke
+ */
+public class CommandLoopTests {
+
+    /** Commands used in tests. */
+    private static final String[] COMMANDS = {
+        "solve", "restart", "type 5 4", "frob", "new", "seed 3", "brk 0 0",
+        "undo", "type 4 4 free",
+    };
+
+    /** Return the output of a Controller that is given COMMANDS by blocking
+     *  reads from a TestSource, and generates puzzles from SEED. */
+    private String blockingOutput(long seed) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] input = (String.join("\n", COMMANDS) + "\nquit\n")
+            .getBytes(StandardCharsets.UTF_8);
+        TestSource cmnds =
+            new TestSource(Channels.newChannel
+                           (new ByteArrayInputStream(input)));
+        PrintStream outs = new PrintStream(out, true);
+        Controller puzzler =
+            new Controller(null, cmnds, new PuzzleGenerator(seed), true, true,
+                           outs, outs);
+        while (puzzler.solving()) {
+            puzzler.solvePuzzle();
+        }
+        return out.toString();
+    }
+
+    @Test
+    public void publishedTest() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream outs = new PrintStream(out, true);
+        Controller puzzler =
+            new Controller(null, null, new PuzzleGenerator(17), true, true,
+                           outs, outs);
+        CommandLoop loop = new CommandLoop(puzzler);
+        try (SubmissionPublisher<CharSequence> commands =
+             new SubmissionPublisher<>()) {
+            commands.subscribe(loop);
+            for (String cmnd : COMMANDS) {
+                commands.submit(cmnd);
+            }
+        }
+        loop.finished().get(30, TimeUnit.SECONDS);
+        assertFalse(puzzler.solving());
+        assertEquals(blockingOutput(17), out.toString());
+    }
+
+    @Test
+    public void quitTest() throws Exception {
+        Controller puzzler =
+            new Controller(null, null, new PuzzleGenerator(5), false, false,
+                           System.out, System.err);
+        CommandLoop loop = new CommandLoop(puzzler);
+        SubmissionPublisher<CharSequence> commands =
+            new SubmissionPublisher<>();
+        commands.subscribe(loop);
+        commands.submit("new");
+        commands.submit("q");
+        commands.submit("solve");
+        loop.finished().get(30, TimeUnit.SECONDS);
+        assertFalse(puzzler.solving());
+        commands.close();
+    }
+
+}
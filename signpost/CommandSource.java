@@ -11,6 +11,9 @@ package signpost;
  *                state.
  *    - CONN X0 Y0 X1 Y1:
  *                Connect square (X0, Y0) to (X1, Y1).
+ *    - CONNS X0 Y0 X1 Y1 X2 Y2 ...:
+ *                Connect each square in the path (X0, Y0), (X1, Y1), ...
+ *                to the next, as one move.
  *    - BRK X0 Y0:
  *                Remove any connections to and from (X0, Y0).
  *    - UNDO:     Go back one move.
@@ -18,6 +21,7 @@ package signpost;
  *    - SEED s:   Set a new random seed.
  *    - SOLVE:    Show sequence numbers of a solution.
  *    - QUIT:     Exit the program.
+ *  Commands are case-insensitive.
  *  @author P. N. Hilfinger
  */
 interface CommandSource {
@@ -26,4 +30,11 @@ interface CommandSource {
      *  whitespace and converted to upper case. */
     String getCommand();
 
+    /** Read one command into CMND, returning CMND.  The default
+     *  implementation decodes the result of getCommand(); sources that
+     *  can decode their input directly should override it. */
+    default Command getCommand(Command cmnd) {
+        return cmnd.decode(getCommand());
+    }
+
 }
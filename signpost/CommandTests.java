@@ -0,0 +1,90 @@
+package signpost;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import signpost.Command.Verb;
+
+/** Tests of the Command class.
+ *  @author Abel Feleke
+ */
+public class CommandTests {
+
+    @Test
+    public void verbTest() {
+        Command cmnd = new Command();
+        assertEquals(Verb.QUIT, cmnd.decode("quit").verb());
+        assertEquals(Verb.QUIT, cmnd.decode("  Q ").verb());
+        assertEquals(Verb.UNDO, cmnd.decode("u").verb());
+        assertEquals(Verb.SOLVE, cmnd.decode("Solve").verb());
+        assertEquals(Verb.EMPTY, cmnd.decode("   ").verb());
+        assertEquals(Verb.BAD, cmnd.decode("FROB").verb());
+        assertEquals("FROB", cmnd.toString());
+    }
+
+    @Test
+    public void operandTest() {
+        Command cmnd = new Command();
+        cmnd.decode("conn 1 2\t3  4");
+        assertEquals(Verb.CONN, cmnd.verb());
+        assertEquals(4, cmnd.count());
+        assertEquals(1, cmnd.intOperand(0));
+        assertEquals(4, cmnd.intOperand(3));
+        assertEquals("CONN 1 2\t3  4", cmnd.toString());
+        cmnd.decode("TYPE 5 6 free");
+        assertEquals(Verb.TYPE, cmnd.verb());
+        assertEquals(6, cmnd.intOperand(1));
+        assertTrue(cmnd.free());
+        cmnd.decode("TYPE 5 6");
+        assertFalse(cmnd.free());
+        cmnd.decode("CONNS 0 0 1 1 2 2 3 3 4 4 5 5");
+        assertEquals(Verb.CONNS, cmnd.verb());
+        assertEquals(12, cmnd.count());
+        assertEquals(5, cmnd.intOperand(11));
+        cmnd.decode("SEED 123456789012");
+        assertEquals(Verb.SEED, cmnd.verb());
+        assertEquals(123456789012L, cmnd.longOperand(0));
+    }
+
+    @Test
+    public void malformedTest() {
+        Command cmnd = new Command();
+        assertEquals(Verb.BAD, cmnd.decode("CONN 1 2 3").verb());
+        assertEquals(Verb.BAD, cmnd.decode("BRK 1 x").verb());
+        assertEquals(Verb.BAD, cmnd.decode("BRK 1 99999999999").verb());
+        assertEquals(Verb.BAD, cmnd.decode("SEED -").verb());
+        assertEquals(Verb.BAD, cmnd.decode("CONNS 1 2 3 4 5").verb());
+    }
+
+    @Test
+    public void bufferTest() {
+        byte[] text = "# x\n  brk 3 2  \nnew".getBytes(StandardCharsets.UTF_8);
+        Command cmnd = new Command();
+        cmnd.decode(ByteBuffer.wrap(text), 4, 16);
+        assertEquals(Verb.BRK, cmnd.verb());
+        assertEquals(3, cmnd.intOperand(0));
+        assertEquals(2, cmnd.intOperand(1));
+        assertEquals("BRK 3 2", cmnd.toString());
+        assertTrue(cmnd.decode(ByteBuffer.wrap(text), 0, 3).comment());
+    }
+
+    @Test
+    public void setTest() {
+        Command cmnd = new Command(), copy = new Command();
+        cmnd.set(Verb.CONN, false, 1, 2, 3, 4);
+        assertEquals("CONN 1 2 3 4", cmnd.toString());
+        assertEquals(4, cmnd.intOperand(3));
+        assertTrue(copy.decode(cmnd.toString()).sameAs(cmnd));
+        cmnd.set(Verb.TYPE, true, 5, 6);
+        assertEquals("TYPE 5 6 FREE", cmnd.toString());
+        assertTrue(copy.decode(cmnd.toString()).sameAs(cmnd));
+        copy.set(new Command().set(Verb.SEED, false, -123456789012L));
+        assertEquals(-123456789012L, copy.longOperand(0));
+        assertEquals("SEED -123456789012", copy.toString());
+        assertFalse(copy.sameAs(cmnd));
+    }
+
+}
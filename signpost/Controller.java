@@ -1,7 +1,26 @@
 package signpost;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
+import static java.nio.file.StandardOpenOption.*;
+import static signpost.PuzzlePack.decode;
+import static signpost.PuzzlePack.encode;
+import static signpost.PuzzlePack.recordSize;
 import static signpost.Utils.*;
 import static signpost.Place.*;
 import signpost.Model.Sq;
@@ -13,6 +32,19 @@ public class Controller {
     /** The default number of squares on a side of the board. */
     static final int DEFAULT_SIZE = 4;
 
+    /** Time allowed for obtaining a new puzzle before giving up. */
+    static final Duration PUZZLE_DEADLINE = Duration.ofSeconds(10);
+
+    /** First four bytes of a hibernated session ("SPHB"). */
+    static final int SNAPSHOT_MAGIC = 0x53504842;
+
+    /** Minimum time between updates of the view. */
+    static final Duration FRAME_INTERVAL = Duration.ofMillis(16);
+
+    /** Number of journaled commands after which a new checkpoint is
+     *  journaled. */
+    static final int CHECKPOINT_INTERVAL = 256;
+
     /** Controller for a game represented by MODEL, using COMMANDS as the
      *  the source of commands, and PUZZLES to supply puzzles.  If LOGGING,
      *  prints commands received on standard output.  If TESTING, prints
@@ -21,13 +53,32 @@ public class Controller {
     public Controller(View view,
                       CommandSource commands, PuzzleSource puzzles,
                       boolean logging, boolean testing) {
+        this(view, commands, puzzles, logging, testing,
+             System.out, System.err);
+    }
+
+    /** As for Controller(VIEW, COMMANDS, PUZZLES, LOGGING, TESTING), but
+     *  printing logged output on OUT and error messages on ERR rather than
+     *  on the standard output and standard error. */
+    Controller(View view, CommandSource commands, PuzzleSource puzzles,
+               boolean logging, boolean testing,
+               PrintStream out, PrintStream err) {
         _view = view;
+        _out = out;
+        _err = err;
         _commands = commands;
         _puzzles = puzzles;
         _logging = logging;
         _testing = testing;
         _solving = true;
         _width = _height = DEFAULT_SIZE;
+        _lastWidth = _lastHeight = DEFAULT_SIZE;
+    }
+
+    /** Reject TYPE commands for boards wider or higher than SIDE
+     *  squares, as a server must to protect its other sessions. */
+    void setMaxSide(int side) {
+        _maxSide = side;
     }
 
     /** Return true iff we have not received a Quit command. */
@@ -37,60 +88,402 @@ public class Controller {
 
     /** Clear the board and solve one puzzle, until receiving a quit,
      *  new-game, or board-type change request.  Update the viewer with
-     *  each visible modification to the model. */
+     *  each visible modification to the model.  This reads commands from
+     *  my CommandSource, blocking until each is available; see CommandLoop
+     *  for a non-blocking alternative. */
     void solvePuzzle() {
-        _model = _puzzles.getPuzzle(_width, _height, _allowFreeEnds);
-        initUndo();
-        logPuzzle();
-        logBoard();
-        while (_solving) {
-            if (_view != null) {
-                _view.update(_model);
-            }
+        startPuzzle();
+        do {
+            updateView();
+        } while (execute(_commands.getCommand(_command)));
+    }
+
+    /** Carry out CMND on the current puzzle.  Returns false if CMND ends
+     *  the current puzzle: a request for a new puzzle, for a change of
+     *  puzzle type, or to quit (after which solving() is false). */
+    synchronized boolean execute(Command cmnd) {
+        thaw();
+        _lastActive = System.nanoTime();
+        if (_logging && !_replaying) {
+            cmnd.print(_out);
+        }
+        if (!checkOperands(cmnd)) {
+            return true;
+        }
+        journal(cmnd);
+        switch (cmnd.verb()) {
+        case QUIT:
+            _solving = false;
+            return false;
+        case NEW:
+            return false;
+        case TYPE:
+            setType(cmnd.intOperand(0), cmnd.intOperand(1), cmnd.free());
+            return false;
+        case SEED:
+            _puzzles.setSeed(cmnd.longOperand(0));
+            break;
+        case CONN:
+            connect(cmnd.intOperand(0), cmnd.intOperand(1),
+                    cmnd.intOperand(2), cmnd.intOperand(3));
+            break;
+        case CONNS:
+            connectPath(cmnd);
+            break;
+        case BRK:
+            disconnect(cmnd.intOperand(0), cmnd.intOperand(1));
+            break;
+        case RESTART:
+            restart();
+            break;
+        case UNDO:
+            undo();
+            break;
+        case REDO:
+            redo();
+            break;
+        case SOLVE:
+            solve();
+            break;
+        case EMPTY:
+            break;
+        default:
+            _err.printf("Bad command: '%s'%n", cmnd);
+            break;
+        }
+        if (_journaled >= CHECKPOINT_INTERVAL) {
+            checkpoint();
+        }
+        return true;
+    }
 
-            String cmnd = _commands.getCommand();
-            if (_logging) {
-                System.out.println(cmnd);
+    /** Return true iff the operands of CMND are in range: the squares
+     *  named by CONN and BRK are on the board, and TYPE asks for sides
+     *  of at least 2 and at most my limit (see setMaxSide).  Otherwise,
+     *  report CMND on my error stream and return false. */
+    private boolean checkOperands(Command cmnd) {
+        switch (cmnd.verb()) {
+        case TYPE:
+            int w = cmnd.intOperand(0), h = cmnd.intOperand(1);
+            if (w > _maxSide || h > _maxSide) {
+                _err.printf("Board too large: %dx%d (at most %d on a side)%n",
+                            w, h, _maxSide);
+                return false;
             }
-            String[] parts = cmnd.split("\\s+");
-            switch (parts[0]) {
-            case "QUIT": case "Q":
-                _solving = false;
-                return;
-            case "NEW":
-                return;
-            case "TYPE":
-                setType(toInt(parts[1]), toInt(parts[2]),
-                        parts.length > 3 && parts[3].equals("FREE"));
+            return checkOperands(cmnd, w > 1 && h > 1);
+        case CONN:
+            return checkOperands(cmnd, _model.isCell(cmnd.intOperand(0),
+                                                     cmnd.intOperand(1))
+                                 && _model.isCell(cmnd.intOperand(2),
+                                                  cmnd.intOperand(3)));
+        case BRK:
+            return checkOperands(cmnd, _model.isCell(cmnd.intOperand(0),
+                                                     cmnd.intOperand(1)));
+        default:
+            return true;
+        }
+    }
+
+    /** Return OK, first reporting CMND as a bad command if it is
+     *  false. */
+    private boolean checkOperands(Command cmnd, boolean ok) {
+        if (!ok) {
+            _err.printf("Bad command: '%s'%n", cmnd);
+        }
+        return ok;
+    }
+
+    /** If there is a view and the board has changed since the view was
+     *  last updated, arrange to update it to show the current model.
+     *  Updates are coalesced: the view is updated at once if at least
+     *  FRAME_INTERVAL has passed since its last update, and otherwise at
+     *  the end of that interval, with whatever the board is then.  Thus
+     *  the view receives at most one update per interval, showing the
+     *  latest state.  The view is updated on one of the VIEW_UPDATES
+     *  threads with a copy of the model, without my lock, and never by
+     *  two threads at once, so that a slow view delays neither my commands
+     *  nor the views of other Controllers. */
+    void updateView() {
+        if (_view == null) {
+            return;
+        }
+        synchronized (this) {
+            if (!_viewStale || _model == null || _viewPending) {
                 return;
-            case "SEED":
-                _puzzles.setSeed(toLong(parts[1]));
-                break;
-            case "CONN": case "C":
-                connect(toInt(parts[1]), toInt(parts[2]),
-                        toInt(parts[3]), toInt(parts[4]));
-                break;
-            case "BRK": case "B":
-                disconnect(toInt(parts[1]), toInt(parts[2]));
-                break;
-            case "RESTART":
-                restart();
-                break;
-            case "UNDO": case "U":
-                undo();
-                break;
-            case "REDO": case "R":
-                redo();
-                break;
-            case "SOLVE":
-                solve();
-                break;
-            case "":
-                break;
-            default:
-                System.err.printf("Bad command: '%s'%n", cmnd);
-                break;
             }
+            _viewPending = true;
+            long wait = _lastViewUpdate + nanos(FRAME_INTERVAL)
+                - System.nanoTime();
+            if (wait <= 0) {
+                VIEW_UPDATES.execute(this::publishView);
+            } else {
+                CompletableFuture.runAsync
+                    (this::publishView,
+                     CompletableFuture.delayedExecutor
+                     (wait, TimeUnit.NANOSECONDS, VIEW_UPDATES));
+            }
+        }
+    }
+
+    /** Update my view to show a copy of the current model, and then
+     *  arrange another update if the board changed in the meantime. */
+    private void publishView() {
+        Model model;
+        synchronized (this) {
+            _viewStale = false;
+            _lastViewUpdate = System.nanoTime();
+            model = _model == null ? null : new Model(_model);
+        }
+        try {
+            if (model != null) {
+                _view.update(model);
+            }
+        } finally {
+            synchronized (this) {
+                _viewPending = false;
+            }
+            updateView();
+        }
+    }
+
+    /** Start on a new puzzle of the current type, waiting until it is
+     *  available.  Throws IllegalStateException if no puzzle can be had. */
+    void startPuzzle() {
+        try {
+            startPuzzleAsync().join();
+        } catch (CompletionException excp) {
+            if (excp.getCause() instanceof IllegalStateException) {
+                throw (IllegalStateException) excp.getCause();
+            }
+            throw new IllegalStateException(excp.getCause());
+        }
+    }
+
+    /** Request a new puzzle of the current type, returning a future that
+     *  completes when I have started on it.  If none can be had within
+     *  PUZZLE_DEADLINE, report this and revert to the type of the last
+     *  puzzle obtained. */
+    CompletableFuture<Void> startPuzzleAsync() {
+        synchronized (this) {
+            if (_resumed) {
+                _resumed = false;
+                _viewStale = true;
+                _loggedBoard = null;
+                logBoard();
+                return CompletableFuture.completedFuture(null);
+            }
+        }
+        return _puzzles.getPuzzleAsync(_width, _height, _allowFreeEnds,
+                                       PUZZLE_DEADLINE)
+            .handle((puzzle, excp) -> {
+                if (excp == null) {
+                    synchronized (this) {
+                        discardSnapshot();
+                        _lastActive = System.nanoTime();
+                        _lastWidth = _width;
+                        _lastHeight = _height;
+                        _lastAllowFreeEnds = _allowFreeEnds;
+                        _model = puzzle;
+                        initUndo();
+                        checkpoint();
+                        logPuzzle();
+                        _loggedBoard = null;
+                        logBoard();
+                    }
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+                Throwable cause = excp instanceof CompletionException
+                    ? excp.getCause() : excp;
+                if (!(cause instanceof TimeoutException)) {
+                    return CompletableFuture.<Void>failedFuture(cause);
+                } else if (_width == _lastWidth && _height == _lastHeight
+                           && _allowFreeEnds == _lastAllowFreeEnds) {
+                    return CompletableFuture.<Void>failedFuture
+                        (new IllegalStateException("puzzle generation"
+                                                   + " timed out"));
+                }
+                _err.printf("Could not generate a %dx%d puzzle in time.%n",
+                            _width, _height);
+                setType(_lastWidth, _lastHeight, _lastAllowFreeEnds);
+                return startPuzzleAsync();
+            })
+            .thenCompose(Function.identity());
+    }
+
+    /** If DIFFS, then when testing, log each board after the first of a
+     *  puzzle as just the squares whose text differs from that of the
+     *  previously logged board, rather than in full (see logBoard). */
+    void setDiffLogging(boolean diffs) {
+        _diffLogging = diffs;
+    }
+
+    /** Record my progress in JOURNAL from now on.  If JOURNAL holds a
+     *  checkpoint from an earlier run, first rebuild the puzzle it records
+     *  by replaying the commands that follow it, so that the next call of
+     *  startPuzzle resumes that puzzle rather than starting a new one. */
+    synchronized void setJournal(Journal journal) throws IOException {
+        ByteBuffer state = journal.lastCheckpoint();
+        if (state != null) {
+            _allowFreeEnds = state.get() != 0;
+            restore(state);
+            _width = _lastWidth = _model.width();
+            _height = _lastHeight = _model.height();
+            _lastAllowFreeEnds = _allowFreeEnds;
+            _replaying = true;
+            try {
+                for (String line : journal.commands()) {
+                    execute(_command.decode(line));
+                }
+            } finally {
+                _replaying = false;
+            }
+            _resumed = true;
+        }
+        _journal = journal;
+        if (state != null) {
+            checkpoint();
+        }
+    }
+
+    /** Return the value of System.nanoTime() when I last carried out a
+     *  command or started a puzzle. */
+    long lastActive() {
+        return _lastActive;
+    }
+
+    /** Return true iff my puzzle is hibernated. */
+    synchronized boolean hibernated() {
+        return _snapshot != null;
+    }
+
+    /** Write my current puzzle, with its state and undo history, to FILE
+     *  and release them from memory.  They are restored from FILE (which
+     *  is then deleted) when next needed.  Does nothing if I have no
+     *  puzzle in memory. */
+    synchronized void hibernate(Path file) throws IOException {
+        if (_model == null) {
+            return;
+        }
+        ByteBuffer out = snapshot();
+        try (FileChannel chan = FileChannel.open(file, CREATE, WRITE,
+                                                 TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                chan.write(out);
+            }
+        }
+        _snapshot = file;
+        _model = null;
+        _undoStack = new ArrayList<>();
+    }
+
+    /** If my puzzle is hibernated, restore it and delete its snapshot. */
+    private synchronized void thaw() {
+        if (_snapshot == null) {
+            return;
+        }
+        try {
+            restore(ByteBuffer.wrap(Files.readAllBytes(_snapshot)));
+        } catch (IOException excp) {
+            throw new IllegalStateException("could not restore session: "
+                                            + excp.getMessage());
+        }
+        discardSnapshot();
+    }
+
+    /** Return a snapshot of my current puzzle, with its state and undo
+     *  history, in a buffer ready for reading. */
+    private ByteBuffer snapshot() {
+        int size = 16 + recordSize(_model.width(), _model.height());
+        for (Model state : _undoStack) {
+            size += state.stateSize();
+        }
+        size += _model.stateSize();
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(SNAPSHOT_MAGIC);
+        out.putShort((short) _model.width()).putShort((short) _model.height());
+        encode(_model, out);
+        out.putInt(_undoIndex).putInt(_undoStack.size());
+        _undoStack.get(0).writeState(out, null);
+        for (int i = 1; i < _undoStack.size(); i += 1) {
+            _undoStack.get(i).writeState(out, _undoStack.get(i - 1));
+        }
+        _model.writeState(out, _undoStack.get(_undoIndex));
+        out.flip();
+        return out;
+    }
+
+    /** Replace my puzzle, its state, and its undo history with those in
+     *  IN, as written by snapshot(). */
+    private void restore(ByteBuffer in) throws IOException {
+        if (in.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("not a session snapshot");
+        }
+        int w = in.getShort(), h = in.getShort();
+        Model state = decode(in, w, h);
+        _undoIndex = in.getInt();
+        int count = in.getInt();
+        _undoStack = new ArrayList<>();
+        for (int i = 0; i < count; i += 1) {
+            if (i > 0) {
+                state = new Model(state);
+            }
+            state.readState(in);
+            _undoStack.add(state);
+        }
+        _model = new Model(_undoStack.get(_undoIndex));
+        _model.readState(in);
+    }
+
+    /** If journaling, and CMND may change the current puzzle, append it
+     *  to my journal.  This precedes carrying out CMND, so that no board
+     *  is reported to a client before the command producing it is in the
+     *  journal.  Commands with bad operands are rejected first and never
+     *  journaled.  The caller checkpoints once CHECKPOINT_INTERVAL commands
+     *  have been journaled, after carrying out the last of them. */
+    private void journal(Command cmnd) {
+        if (_journal == null || !JOURNALED.contains(cmnd.verb())) {
+            return;
+        }
+        try {
+            _journal.append(cmnd.toString());
+            _journaled += 1;
+        } catch (IOException excp) {
+            journalFailed(excp);
+        }
+    }
+
+    /** If journaling, append a checkpoint of the current puzzle, which
+     *  supersedes all earlier journal records. */
+    private void checkpoint() {
+        if (_journal == null) {
+            return;
+        }
+        ByteBuffer snap = snapshot();
+        ByteBuffer state = ByteBuffer.allocate(1 + snap.remaining());
+        state.put((byte) (_allowFreeEnds ? 1 : 0)).put(snap).flip();
+        try {
+            _journal.checkpoint(state);
+            _journaled = 0;
+        } catch (IOException excp) {
+            journalFailed(excp);
+        }
+    }
+
+    /** Report EXCP, an error writing my journal, and stop journaling. */
+    private void journalFailed(IOException excp) {
+        _err.printf("Journal error: %s%n", excp.getMessage());
+        _journal = null;
+    }
+
+    /** Delete the snapshot of my puzzle, if it is hibernated. */
+    synchronized void discardSnapshot() {
+        if (_snapshot != null) {
+            try {
+                Files.deleteIfExists(_snapshot);
+            } catch (IOException excp) {
+                /* Ignore. */
+            }
+            _snapshot = null;
         }
     }
 
@@ -107,6 +500,31 @@ public class Controller {
         logBoard();
     }
 
+    /** Connect each square in the path given by the operands of CMND
+     *  (X0 Y0 X1 Y1 ...) to the next, autoconnecting once afterwards and
+     *  recording the result as a single move.  Reports each connection
+     *  that is not allowed (which has no effect) on the standard output,
+     *  where a client that sent the command can find it. */
+    private void connectPath(Command cmnd) {
+        boolean changed = false;
+        for (int k = 0; k + 3 < cmnd.count(); k += 2) {
+            int x0 = cmnd.intOperand(k), y0 = cmnd.intOperand(k + 1),
+                x1 = cmnd.intOperand(k + 2), y1 = cmnd.intOperand(k + 3);
+            if (_model.isCell(x0, y0) && _model.isCell(x1, y1)
+                && _model.get(x0, y0).connect(_model.get(x1, y1))) {
+                changed = true;
+            } else if (!_replaying) {
+                _out.printf("Rejected connection: %d %d %d %d%n",
+                            x0, y0, x1, y1);
+            }
+        }
+        if (changed) {
+            _model.autoconnect();
+            saveForUndo();
+        }
+        logBoard();
+    }
+
     /** Disconnect (X, Y) from its successor and predecessor, if connected.
      *  Otherwise has no effect. */
     private void disconnect(int x, int y) {
@@ -138,6 +556,7 @@ public class Controller {
     /** Set current puzzle bpard to show a solution. */
     private void solve() {
         _model.solve();
+        _viewStale = true;
         logBoard();
     }
 
@@ -154,6 +573,7 @@ public class Controller {
         if (_undoIndex > 0) {
             _undoIndex -= 1;
             _model = new Model(_undoStack.get(_undoIndex));
+            _viewStale = true;
         }
         logBoard();
     }
@@ -163,12 +583,14 @@ public class Controller {
         if (_undoIndex + 1 < _undoStack.size()) {
             _undoIndex += 1;
             _model = new Model(_undoStack.get(_undoIndex));
+            _viewStale = true;
         }
         logBoard();
     }
 
     /** Initialize _undoStack to contain just current model. */
     private void initUndo() {
+        _viewStale = true;
         _undoStack.clear();
         _undoStack.add(new Model(_model));
         _undoIndex = 0;
@@ -176,42 +598,78 @@ public class Controller {
 
     /** Save current board position for possible undo. */
     private void saveForUndo() {
+        _viewStale = true;
         _undoStack.subList(_undoIndex + 1, _undoStack.size()).clear();
         _undoStack.add(new Model(_model));
         _undoIndex += 1;
     }
 
-    /** If testing, print the contents of the board. */
+    /** If testing, print the contents of the board.  When diff logging,
+     *  only the first board of each puzzle is printed in full.  Later
+     *  boards are printed as a header like that of a full board, but
+     *  starting "D[", followed by a line "X Y NUMBER|LINKS" for each square
+     *  (X, Y) whose text differs from the last board logged, where NUMBER
+     *  and LINKS are the six-character upper and lower halves of the
+     *  square's text, and finally a line "]".  testing/expand_log.py
+     *  converts such logs back to full boards. */
     private void logBoard() {
-        if (_testing) {
-            System.out.printf("B[ %dx%d%s%n%s]%n",
-                              _model.width(), _model.height(),
-                              _model.solved() ? " (SOLVED)" : "", _model);
+        if (!_testing || _replaying) {
+            return;
         }
+        String header = String.format("%dx%d%s", _model.width(),
+                                       _model.height(),
+                                       _model.solved() ? " (SOLVED)" : "");
+        if (!_diffLogging) {
+            _out.printf("B[ %s%n%s]%n", header, _model);
+            return;
+        }
+        String[] board = _model.toString().split("\\r?\\n");
+        if (_loggedBoard == null || _loggedBoard.length != board.length) {
+            _out.printf("B[ %s%n%s]%n", header, _model);
+        } else {
+            _out.printf("D[ %s%n", header);
+            int h = _model.height();
+            for (int y = h - 1; y >= 0; y -= 1) {
+                String num = board[3 * (h - y) - 2],
+                    links = board[3 * (h - y) - 1],
+                    num0 = _loggedBoard[3 * (h - y) - 2],
+                    links0 = _loggedBoard[3 * (h - y) - 1];
+                for (int x = 0, c = 1; x < _model.width(); x += 1, c += 7) {
+                    if (!num.regionMatches(c, num0, c, 6)
+                        || !links.regionMatches(c, links0, c, 6)) {
+                        _out.printf("%d %d %s|%s%n", x, y,
+                                    num.substring(c, c + 6),
+                                    links.substring(c, c + 6));
+                    }
+                }
+            }
+            _out.printf("]%n");
+        }
+        _loggedBoard = board;
     }
 
     /** If logging, print a representation of the puzzle suitable for input
      *  from a TestSource. */
     private void logPuzzle() {
         if (_logging) {
-            System.out.printf("PUZZLE%n%d %d%n",
+            _out.printf("PUZZLE%n%d %d%n",
                               _model.width(), _model.height());
             int[][] soln = _model.solution();
             for (int y = _model.height() - 1; y >= 0; y -= 1) {
                 for (int x = 0; x < _model.width(); x += 1) {
-                    System.out.printf("%d ", soln[x][y]);
+                    _out.printf("%d ", soln[x][y]);
                 }
-                System.out.println();
+                _out.println();
             }
             for (int y = _model.height() - 1; y >= 0; y -= 1) {
                 for (int x = 0; x < _model.width(); x += 1) {
                     Sq sq = _model.get(x, y);
                     if (sq.hasFixedNum()) {
-                        System.out.printf("%d ", soln[x][y]);
+                        _out.printf("%d ", soln[x][y]);
                     }
                 }
             }
-            System.out.printf("%nENDPUZZLE%n");
+            _out.printf("%nENDPUZZLE%n");
         }
     }
 
@@ -230,24 +688,87 @@ public class Controller {
     /** Our view of _model. */
     private View _view;
 
+    /** True iff _model may differ from what _view last showed. */
+    private boolean _viewStale;
+
+    /** True iff an update of _view is scheduled or in progress. */
+    private boolean _viewPending;
+
+    /** Value of System.nanoTime() at the last update of _view. */
+    private long _lastViewUpdate = System.nanoTime() - nanos(FRAME_INTERVAL);
+
+    /** Threads performing the view updates of all Controllers.  Each
+     *  Controller uses at most one at a time. */
+    private static final ExecutorService VIEW_UPDATES =
+        Executors.newCachedThreadPool((r) -> {
+            Thread t = new Thread(r, "view-updates");
+            t.setDaemon(true);
+            return t;
+        });
+
+    /** When hibernated, the file holding my puzzle, and otherwise null. */
+    private Path _snapshot;
+
+    /** Value of System.nanoTime() at my last activity. */
+    private volatile long _lastActive = System.nanoTime();
+
     /** Puzzle dimensions. */
     private int _width, _height;
+    /** Largest width or height accepted from a TYPE command. */
+    private int _maxSide = Integer.MAX_VALUE;
+
+    /** Type of the last puzzle successfully obtained from _puzzles. */
+    private int _lastWidth, _lastHeight;
+    /** True iff the last puzzle obtained from _puzzles allows free ends. */
+    private boolean _lastAllowFreeEnds;
 
     /** Input source from standard input. */
     private CommandSource _commands;
 
+    /** The most recent command, refilled by each read from _commands. */
+    private final Command _command = new Command();
+
     /** Input source from standard input. */
     private PuzzleSource _puzzles;
 
     /** True while user is still working on a puzzle. */
     private boolean _solving;
 
+    /** Destinations for logged output and for error messages. */
+    private final PrintStream _out, _err;
+
     /** True iff we are logging commands on standard output. */
     private boolean _logging;
 
     /** True iff we are testing the program and printing board contents. */
     private boolean _testing;
 
+    /** Commands that are journaled. */
+    private static final EnumSet<Command.Verb> JOURNALED =
+        EnumSet.of(Command.Verb.CONN, Command.Verb.CONNS, Command.Verb.BRK,
+                   Command.Verb.RESTART, Command.Verb.UNDO, Command.Verb.REDO,
+                   Command.Verb.SOLVE);
+
+    /** Journal of my progress, or null if none is kept. */
+    private Journal _journal;
+
+    /** Number of commands journaled since the last checkpoint. */
+    private int _journaled;
+
+    /** True while replaying journaled commands, which are not logged. */
+    private boolean _replaying;
+
+    /** True iff the puzzle in _model was rebuilt from a journal and is to
+     *  be resumed by the next startPuzzle rather than replaced. */
+    private boolean _resumed;
+
+    /** True iff boards are logged as changes from the previous board. */
+    private boolean _diffLogging;
+
+    /** Lines of the last board logged since the start of the current
+     *  puzzle, or null if none has been. */
+    private String[] _loggedBoard;
+
     /** True iff we allow generated puzzles to have free ends. */
     private boolean _allowFreeEnds;
 
@@ -0,0 +1,175 @@
+package signpost;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import signpost.Model.Sq;
+
+/** Tests of the Controller class.
+ *  @author Abel Feleke
+ */
+public class ControllerTests {
+
+    /** Commands applied to sessions in tests. */
+    static final String[] COMMANDS = {
+        "solve", "restart", "conn 0 3 1 3", "brk 0 3", "undo", "undo",
+        "redo", "solve", "undo",
+    };
+
+    @Test
+    public void coalescedViewTest() throws Exception {
+        RecordingView view = new RecordingView(1);
+        PrintStream out = new PrintStream(new ByteArrayOutputStream(), true);
+        Controller session =
+            new Controller(view, null, new PuzzleGenerator(3), false, false,
+                           out, out);
+        session.startPuzzle();
+        session.updateView();
+        assertFalse("initial board shown", view.await((m) -> true).solved());
+        Command cmnd = new Command();
+        session.execute(cmnd.decode("solve"));
+        session.updateView();
+        for (int i = 0; i < 20; i += 1) {
+            session.execute(cmnd.decode(i % 2 == 0 ? "restart" : "solve"));
+            session.updateView();
+        }
+        view.release();
+        view.await(Model::solved);
+        assertTrue("updates coalesced", view.count() <= 3);
+        session.execute(cmnd.decode("restart"));
+        session.updateView();
+        view.await((m) -> !m.solved());
+        int count = view.count();
+        session.execute(cmnd.decode("conn 0 0 0 0"));
+        session.execute(cmnd.decode("conn 0 0 0 0"));
+        session.updateView();
+        session.execute(cmnd.decode("solve"));
+        session.updateView();
+        view.await(Model::solved);
+        assertEquals("unchanged board not shown", count + 1, view.count());
+    }
+
+    @Test
+    public void undoTest() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream outs = new PrintStream(out, true);
+        RecordingView view = new RecordingView(-1);
+        Controller session =
+            new Controller(view, null, new PuzzleGenerator(3), false, true,
+                           outs, outs);
+        session.startPuzzle();
+        session.updateView();
+        Model model = view.await((m) -> true);
+        Command cmnd = new Command();
+        String before = lastBoard(out);
+        session.execute(cmnd.decode(nextLink(model)));
+        String after = lastBoard(out);
+        assertNotEquals("connection made", before, after);
+        session.execute(cmnd.decode(nextLink(model)));
+        session.execute(cmnd.decode("undo"));
+        assertEquals("undo restores the connected board", after,
+                     lastBoard(out));
+        session.execute(cmnd.decode("undo"));
+        assertEquals("undo restores the initial board", before,
+                     lastBoard(out));
+        session.execute(cmnd.decode("redo"));
+        assertEquals("redo restores the connected board", after,
+                     lastBoard(out));
+    }
+
+    /** Return a CONN command making the first link of the solution of
+     *  MODEL that is not yet made, and make that link in MODEL. */
+    private String nextLink(Model model) {
+        for (int k = 1; true; k += 1) {
+            Sq sq0 = model.solnNumToSq(k), sq1 = model.solnNumToSq(k + 1);
+            if (sq0.successor() == null) {
+                sq0.connect(sq1);
+                return String.format("conn %d %d %d %d", sq0.x, sq0.y,
+                                     sq1.x, sq1.y);
+            }
+        }
+    }
+
+    /** Return a testing Controller printing on OUT, with puzzles generated
+     *  from SEED, that has not yet started a puzzle. */
+    static Controller session(ByteArrayOutputStream out, long seed) {
+        PrintStream outs = new PrintStream(out, true);
+        return new Controller(null, null, new PuzzleGenerator(seed), false,
+                              true, outs, outs);
+    }
+
+    /** Return the last board printed on OUT. */
+    static String lastBoard(ByteArrayOutputStream out) {
+        String text = out.toString();
+        return text.substring(text.lastIndexOf("B["));
+    }
+
+    /** A View that records the models it is given.  It can hold up one
+     *  update until released. */
+    private static class RecordingView implements View {
+
+        /** A view that holds up its update numbered HOLD (from 0) until
+         *  release() is called.  A negative HOLD holds up none. */
+        RecordingView(int hold) {
+            _hold = hold;
+        }
+
+        @Override
+        public void update(Model model) {
+            if (count() == _hold) {
+                try {
+                    _release.await();
+                } catch (InterruptedException excp) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (this) {
+                _shown.add(model);
+                notifyAll();
+            }
+        }
+
+        /** Let the update being held up proceed. */
+        void release() {
+            _release.countDown();
+        }
+
+        /** Return the number of updates completed. */
+        synchronized int count() {
+            return _shown.size();
+        }
+
+        /** Wait until the last model shown satisfies COND, and return it.
+         *  Fails if that does not happen within WAIT. */
+        synchronized Model await(Predicate<Model> cond)
+            throws InterruptedException {
+            long deadline = System.nanoTime() + WAIT.toNanos();
+            while (_shown.isEmpty()
+                   || !cond.test(_shown.get(_shown.size() - 1))) {
+                long left = deadline - System.nanoTime();
+                assertTrue("view not updated", left > 0);
+                TimeUnit.NANOSECONDS.timedWait(this, left);
+            }
+            return _shown.get(_shown.size() - 1);
+        }
+
+        /** Longest time to wait for an update. */
+        private static final Duration WAIT = Duration.ofSeconds(30);
+
+        /** Number of the update to hold up. */
+        private final int _hold;
+        /** Released when the held update may proceed. */
+        private final CountDownLatch _release = new CountDownLatch(1);
+        /** The models shown so far. */
+        private final ArrayList<Model> _shown = new ArrayList<>();
+    }
+
+}
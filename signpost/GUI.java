@@ -6,7 +6,9 @@ import ucb.gui2.LayoutSpec;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.concurrent.LinkedBlockingDeque;
 
 import java.awt.Dimension;
 import java.io.InputStream;
@@ -16,7 +18,12 @@ import javax.swing.JEditorPane;
 import javax.swing.JFrame;
 import javax.swing.JScrollPane;
 
-/** The GUI controller for a Signpost board and buttons.
+import signpost.Command.Verb;
+
+/** The GUI controller for a Signpost board and buttons.  Mouse gestures
+ *  and menu clicks are posted as decoded Commands on an unbounded queue,
+ *  so that none is lost however quickly they arrive, and the controller
+ *  takes them in batches.
  *  @author P. N. Hilfinger
  */
 class GUI extends TopLevel implements View {
@@ -47,6 +54,9 @@ class GUI extends TopLevel implements View {
         addMenuButton("Type->Set Size (free ends)", (s) -> newSize(true));
         addMenuButton("Type->Seed", this::newSeed);
         addMenuButton("Game->Quit", this::quit);
+        addMenuButton("View->Zoom In", (s) -> zoom(BoardWidget.ZOOM_STEP));
+        addMenuButton("View->Zoom Out",
+                      (s) -> zoom(1 / BoardWidget.ZOOM_STEP));
         addMenuButton("Help->About", (s) -> displayText("About", ABOUT_TEXT));
         addMenuButton("Help->Signpost", (s) -> displayText("Signpost Help",
                                                            HELP_TEXT));
@@ -54,32 +64,39 @@ class GUI extends TopLevel implements View {
 
     /** Response to "Quit" button click. */
     private void quit(String dummy) {
-        _pendingCommands.offer("QUIT");
+        post(new Command().set(Verb.QUIT, false));
     }
 
     /** Response to "New Game" button click. */
     private void newGame(String dummy) {
-        _pendingCommands.offer("NEW");
+        post(new Command().set(Verb.NEW, false));
     }
 
     /** Response to "Undo" button click. */
     private void undo(String dummy) {
-        _pendingCommands.offer("UNDO");
+        post(new Command().set(Verb.UNDO, false));
     }
 
     /** Response to "Redo" button click. */
     private void redo(String dummy) {
-        _pendingCommands.offer("REDO");
+        post(new Command().set(Verb.REDO, false));
     }
 
     /** Response to "New Game" button click. */
     private void restartGame(String dummy) {
-        _pendingCommands.offer("RESTART");
+        post(new Command().set(Verb.RESTART, false));
     }
 
     /** Response to "Solve" button click. */
     private void showSolution(String dummy) {
-        _pendingCommands.offer("SOLVE");
+        post(new Command().set(Verb.SOLVE, false));
+    }
+
+    /** Response to "Zoom" button clicks: zoom the board by FACTOR. */
+    private void zoom(double factor) {
+        if (_widget != null) {
+            _widget.zoom(factor);
+        }
     }
 
     /** Display text in resource named TEXTRESOURCE in a new window titled
@@ -120,7 +137,7 @@ class GUI extends TopLevel implements View {
 
     /** Pattern describing the 'size' command's arguments. */
     private static final Pattern SIZE_PATN =
-        Pattern.compile("\\s*(\\d{1,2})\\s*[xX]\\s*(\\d{1,2})\\s*$");
+        Pattern.compile("\\s*(\\d{1,3})\\s*[xX]\\s*(\\d{1,3})\\s*$");
 
     /** Pattern describing the 'seed' command's arguments. */
     private static final Pattern SEED_PATN =
@@ -139,9 +156,8 @@ class GUI extends TopLevel implements View {
                 int width = Integer.parseInt(mat.group(1)),
                     height = Integer.parseInt(mat.group(2));
                 if (width >= 1 && height >= 1) {
-                    _pendingCommands.offer(String.format("TYPE %d %d%s",
-                                                         width, height,
-                                                         free ? " free" : ""));
+                    post(new Command().set(Verb.TYPE, free,
+                                           width, height));
                 }
             } else {
                 showMessage("Bad board size chosen.", "Error", "error");
@@ -156,29 +172,54 @@ class GUI extends TopLevel implements View {
         if (response != null) {
             Matcher mat = SEED_PATN.matcher(response);
             if (mat.matches()) {
-                _pendingCommands.offer(String.format("SEED %s", mat.group(1)));
+                post(new Command().set(Verb.SEED, false,
+                                       Long.parseLong(mat.group(1))));
             } else {
                 showMessage("Enter an integral seed value.", "Error", "error");
             }
         }
     }
 
-    /** Return the next command from our widget, waiting for it as necessary.
-     *  Press/release pairs are reported as "CONN" or "BRK" commands.
-     *  Menu-button clicks result in the messages "QUIT", "NEW", "UNDO",
-     *  "REDO", "RESTART", "SEED", "SOLVE", or "TYPE". */
-    String readCommand() {
-        try {
-            return _pendingCommands.take();
-        } catch (InterruptedException excp) {
-            throw new Error("unexpected interrupt");
+    /** Queue CMND for the controller.  A command that repeats the last
+     *  one still queued is dropped if it is MERGEABLE, since executing it
+     *  twice in a row would have the same effect as executing it once. */
+    synchronized void post(Command cmnd) {
+        Command last = _pendingCommands.peekLast();
+        if (last != null && MERGEABLE.contains(cmnd.verb())
+            && last.sameAs(cmnd)) {
+            return;
         }
+        _pendingCommands.offer(cmnd);
+    }
+
+    /** Set CMND to the next command from our widget, waiting for it as
+     *  necessary, and return it.  Press/release pairs are reported as CONN
+     *  or BRK commands.  Menu-button clicks result in QUIT, NEW, UNDO,
+     *  REDO, RESTART, SEED, SOLVE, or TYPE commands.  All commands queued
+     *  when the first is taken are removed at once, and returned by
+     *  subsequent calls.  Called only from the controller's thread. */
+    Command readCommand(Command cmnd) {
+        if (_batch.isEmpty()) {
+            try {
+                _batch.add(_pendingCommands.take());
+            } catch (InterruptedException excp) {
+                throw new Error("unexpected interrupt");
+            }
+            _pendingCommands.drainTo(_batch);
+        }
+        return cmnd.set(_batch.remove());
+    }
+
+    /** Return the text of the next command from our widget, waiting for
+     *  it as necessary (see readCommand(Command)). */
+    String readCommand() {
+        return readCommand(new Command()).toString();
     }
 
     @Override
     public void update(Model model) {
         if (_widget == null) {
-            _widget = new BoardWidget(_pendingCommands);
+            _widget = new BoardWidget(this::post);
             _widget.setSize(model.width(), model.height());
             _width = model.width();
             _height = model.height();
@@ -203,8 +244,14 @@ class GUI extends TopLevel implements View {
     /** The current size of the model. */
     private int _width, _height;
 
-    /** Queue of pending key presses. */
-    private ArrayBlockingQueue<String> _pendingCommands =
-        new ArrayBlockingQueue<>(5);
+    /** Verbs of commands that have no further effect when repeated. */
+    private static final EnumSet<Verb> MERGEABLE =
+        EnumSet.of(Verb.CONN, Verb.BRK, Verb.RESTART, Verb.SOLVE, Verb.QUIT);
+
+    /** Queue of pending commands from the widget and menus. */
+    private final LinkedBlockingDeque<Command> _pendingCommands =
+        new LinkedBlockingDeque<>();
+    /** Commands taken from _pendingCommands and not yet read. */
+    private final ArrayDeque<Command> _batch = new ArrayDeque<>();
 
 }
@@ -15,6 +15,11 @@ class GUISource implements CommandSource {
         return _source.readCommand().toUpperCase();
     }
 
+    @Override
+    public Command getCommand(Command cmnd) {
+        return _source.readCommand(cmnd);
+    }
+
     /** Input source. */
     private GUI _source;
 
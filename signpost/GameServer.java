@@ -0,0 +1,407 @@
+package signpost;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static signpost.Utils.*;
+
+/** A server for many concurrent, headless games on the local host.  Each
+ *  connection is a session with its own Controller, which receives command
+ *  lines (as for a TestSource) from the connection and writes boards (as
+ *  when testing) and error messages back to it.  Sessions are driven by
+ *  CommandLoops over asynchronous channels, so that a session waiting for
+ *  its client holds no thread: commands are carried out on a small, fixed
+ *  pool of SESSION_THREADS threads shared by all sessions, and puzzles are
+ *  generated on PuzzleGenerator's shared, fixed-size pool.
+ *  @author Abel Feleke
+ */
+class GameServer implements AutoCloseable {
+
+    /** Initial size of each session's input buffer. */
+    static final int SESSION_BUFFER_SIZE = 256;
+
+    /** Size of each session's output buffer. */
+    static final int SESSION_OUTPUT_SIZE = 2048;
+
+    /** Largest width or height of the boards that clients may request,
+     *  so that no session can exhaust the memory shared by all. */
+    static final int MAX_SIDE = 30;
+
+    /** Number of threads carrying out the commands of all sessions. */
+    static final int SESSION_THREADS =
+        Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /** A server listening on the loopback interface at PORT (any free port
+     *  if 0), whose K-th session draws puzzles from a generator seeded with
+     *  puzzleSeed(SEED, K). */
+    GameServer(int port, long seed) throws IOException {
+        this(port, seed, null);
+    }
+
+    /** As for GameServer(PORT, SEED), but with idle sessions hibernated by
+     *  HIBERNATOR, if it is non-null. */
+    GameServer(int port, long seed, Hibernator hibernator)
+        throws IOException {
+        this(port, seed, hibernator, null);
+    }
+
+    /** As for GameServer(PORT, SEED, HIBERNATOR), but journaling each
+     *  session in its own file in JOURNALS (if non-null), which is created
+     *  if necessary.  Sessions whose journals remain in JOURNALS from an
+     *  earlier server, which must have died, are resumed by the first new
+     *  connections, one per connection.  Clients do not identify
+     *  themselves, so a resumed session goes to whichever client happens
+     *  to connect, which need not be the one that played it: journaling
+     *  is suitable only for a server whose clients all belong to one
+     *  user. */
+    GameServer(int port, long seed, Hibernator hibernator, Path journals)
+        throws IOException {
+        _group = AsynchronousChannelGroup.withFixedThreadPool
+            (SESSION_THREADS, (r) -> {
+                Thread t = new Thread(r, "session");
+                t.setDaemon(true);
+                return t;
+            });
+        _listener = AsynchronousServerSocketChannel.open(_group)
+            .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                        port));
+        _port = ((InetSocketAddress) _listener.getLocalAddress()).getPort();
+        _seed = seed;
+        _hibernator = hibernator;
+        _journals = journals == null ? null
+            : Files.createDirectories(journals);
+        if (_journals != null) {
+            try (DirectoryStream<Path> files =
+                 Files.newDirectoryStream(_journals, "session-*.wal")) {
+                for (Path file : files) {
+                    _orphans.add(file);
+                }
+            }
+        }
+    }
+
+    /** Return the port on which I listen. */
+    int port() {
+        return _port;
+    }
+
+    /** Accept and start sessions until closed.  Starting a session does
+     *  not wait for it to finish. */
+    void serve() {
+        while (_listener.isOpen()) {
+            try {
+                AsynchronousSocketChannel conn = _listener.accept().get();
+                session(conn,
+                        puzzleSeed(_seed, _sessionCount.getAndIncrement()));
+            } catch (ExecutionException excp) {
+                if (_listener.isOpen()) {
+                    System.err.printf("Server error: %s%n",
+                                      excp.getCause().getMessage());
+                }
+            } catch (InterruptedException excp) {
+                return;
+            }
+        }
+    }
+
+    /** Stop accepting connections.  Sessions in progress continue until
+     *  their clients disconnect. */
+    @Override
+    public void close() throws IOException {
+        _listener.close();
+        _group.shutdown();
+    }
+
+    /** Start one game session over CONN, with puzzles generated from
+     *  SEED.  The session ends, and CONN is closed, after a QUIT command,
+     *  at the end of the client's input, or on an internal error (which
+     *  is reported to the client). */
+    private void session(AsynchronousSocketChannel conn, long seed) {
+        Session session = new Session(conn);
+        PrintStream out = session.out();
+        Controller puzzler =
+            new Controller(null, null, new PuzzleGenerator(seed), false,
+                           true, out, out);
+        puzzler.setMaxSide(MAX_SIDE);
+        Journal journal = journal(puzzler, out);
+        if (_hibernator != null) {
+            _hibernator.register(puzzler);
+        }
+        CommandLoop loop = new CommandLoop(puzzler);
+        loop.finished().whenComplete((v, excp) -> {
+            if (excp != null) {
+                Throwable cause = excp instanceof CompletionException
+                    ? excp.getCause() : excp;
+                out.printf("Internal error: %s%n", cause.getMessage());
+            }
+            if (_hibernator != null) {
+                _hibernator.unregister(puzzler);
+            }
+            if (journal != null) {
+                try {
+                    journal.delete();
+                } catch (IOException e) {
+                    out.printf("Journal error: %s%n", e.getMessage());
+                }
+            }
+            session.close();
+        });
+        session.subscribe(loop);
+    }
+
+    /** If I journal sessions, start a journal for PUZZLER, resuming the
+     *  session recorded by an orphaned journal if there is one, and return
+     *  it.  Otherwise, or if the journal cannot be opened (which is
+     *  reported on OUT), return null. */
+    private Journal journal(Controller puzzler, PrintStream out) {
+        if (_journals == null) {
+            return null;
+        }
+        try {
+            Path file = _orphans.poll();
+            if (file == null) {
+                file = Files.createTempFile(_journals, "session-", ".wal");
+            }
+            Journal journal = new Journal(file);
+            puzzler.setJournal(journal);
+            return journal;
+        } catch (IOException excp) {
+            out.printf("Journal error: %s%n", excp.getMessage());
+            return null;
+        }
+    }
+
+    /** The connection to one client, publishing the command lines it
+     *  sends.  Lines are read only as they are requested, and all output
+     *  written to out() so far is sent to the client before each read, so
+     *  that the client sees all responses to its commands before the
+     *  session waits for more.  Reads and writes are asynchronous.  Lines
+     *  are delivered without recursion, by whichever thread finds a line
+     *  and demand for it, and only one thread does so at a time. */
+    private static class Session
+        implements Flow.Publisher<CharSequence>, Flow.Subscription {
+
+        /** A session over CONN. */
+        Session(AsynchronousSocketChannel conn) {
+            _conn = conn;
+            _in.limit(0);
+        }
+
+        /** Return the stream on which output to my client is written. */
+        PrintStream out() {
+            return _out;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super CharSequence> sub) {
+            _subscriber = sub;
+            sub.onSubscribe(this);
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                _demand += n;
+                if (_draining) {
+                    return;
+                }
+                _draining = true;
+            }
+            drain();
+        }
+
+        @Override
+        public synchronized void cancel() {
+            _done = true;
+        }
+
+        /** Send all remaining output and close my connection.  Must be
+         *  called only after my subscriber has cancelled. */
+        void close() {
+            send(() -> {
+                try {
+                    _conn.close();
+                } catch (IOException excp) {
+                    /* Client went away. */
+                }
+            });
+        }
+
+        /** Deliver buffered lines while my subscriber wants them.  If it
+         *  wants more, send my output and read more input, resuming when
+         *  that is done, or complete if the input has ended. */
+        private void drain() {
+            while (true) {
+                CharSequence line;
+                synchronized (this) {
+                    if (_done || _demand == 0) {
+                        _draining = false;
+                        return;
+                    }
+                    line = nextLine();
+                    if (line == null) {
+                        if (_eof) {
+                            _done = true;
+                            _draining = false;
+                        }
+                        break;
+                    }
+                    _demand -= 1;
+                }
+                _subscriber.onNext(line);
+            }
+            if (_eof) {
+                _subscriber.onComplete();
+            } else {
+                send(this::fill);
+            }
+        }
+
+        /** Remove and return the next complete line of buffered input,
+         *  without its terminator.  At the end of input, the last line need
+         *  not be terminated.  Returns null if there is no such line. */
+        private CharSequence nextLine() {
+            int start = _in.position();
+            for (int k = start; k < _in.limit(); k += 1) {
+                if (_in.get(k) == '\n') {
+                    _in.position(k + 1);
+                    return line(start, k);
+                }
+            }
+            if (_eof && start < _in.limit()) {
+                _in.position(_in.limit());
+                return line(start, _in.limit());
+            }
+            return null;
+        }
+
+        /** Return the input between positions START and END as a
+         *  string. */
+        private String line(int start, int end) {
+            return new String(_in.array(), start, end - start,
+                              StandardCharsets.ISO_8859_1);
+        }
+
+        /** Read more input, enlarging my buffer if it is full, and then
+         *  resume drain.  If my client has gone, end my input instead. */
+        private void fill() {
+            if (_broken) {
+                _eof = true;
+                drain();
+                return;
+            }
+            _in.compact();
+            if (!_in.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(2 * _in.capacity());
+                _in.flip();
+                larger.put(_in);
+                _in = larger;
+            }
+            _conn.read(_in, null, new CompletionHandler<Integer, Void>() {
+                @Override
+                public void completed(Integer n, Void unused) {
+                    _eof = n < 0;
+                    _in.flip();
+                    drain();
+                }
+
+                @Override
+                public void failed(Throwable excp, Void unused) {
+                    _eof = true;
+                    _in.flip();
+                    drain();
+                }
+            });
+        }
+
+        /** Send all output written so far to my client, and then call
+         *  NEXT.  If the client has gone, the output is discarded. */
+        private void send(Runnable next) {
+            _out.flush();
+            ByteBuffer data = ByteBuffer.wrap(_output.toByteArray());
+            _output.reset();
+            write(data, next);
+        }
+
+        /** Write the rest of DATA to my client and then call NEXT. */
+        private void write(ByteBuffer data, Runnable next) {
+            if (_broken || !data.hasRemaining()) {
+                next.run();
+                return;
+            }
+            _conn.write(data, null, new CompletionHandler<Integer, Void>() {
+                @Override
+                public void completed(Integer n, Void unused) {
+                    write(data, next);
+                }
+
+                @Override
+                public void failed(Throwable excp, Void unused) {
+                    _broken = true;
+                    next.run();
+                }
+            });
+        }
+
+        /** Connection to my client. */
+        private final AsynchronousSocketChannel _conn;
+        /** Output not yet sent to my client. */
+        private final ByteArrayOutputStream _output =
+            new ByteArrayOutputStream(SESSION_OUTPUT_SIZE);
+        /** Stream writing to _output. */
+        private final PrintStream _out =
+            new PrintStream(_output, false, StandardCharsets.UTF_8);
+        /** Input received but not yet delivered, between its position and
+         *  limit. */
+        private ByteBuffer _in = ByteBuffer.allocate(SESSION_BUFFER_SIZE);
+        /** The subscriber receiving my lines. */
+        private Flow.Subscriber<? super CharSequence> _subscriber;
+        /** Number of lines requested but not yet delivered. */
+        private long _demand;
+        /** True while some thread is delivering lines or performing I/O on
+         *  behalf of my subscriber. */
+        private boolean _draining;
+        /** True once my subscriber has cancelled or been completed. */
+        private boolean _done;
+        /** True once my client's input has ended. */
+        private boolean _eof;
+        /** True once writing to my client has failed. */
+        private volatile boolean _broken;
+    }
+
+    /** Threads performing the I/O and commands of all sessions. */
+    private final AsynchronousChannelGroup _group;
+    /** Listening socket. */
+    private final AsynchronousServerSocketChannel _listener;
+    /** Port on which I listen. */
+    private final int _port;
+    /** Hibernates idle sessions, or null if they stay in memory. */
+    private final Hibernator _hibernator;
+    /** Directory of session journals, or null if sessions are not
+     *  journaled. */
+    private final Path _journals;
+    /** Journals left by an earlier server, not yet resumed. */
+    private final ConcurrentLinkedQueue<Path> _orphans =
+        new ConcurrentLinkedQueue<>();
+    /** Seed from which session seeds are derived. */
+    private final long _seed;
+    /** Number of sessions started. */
+    private final AtomicLong _sessionCount = new AtomicLong();
+}
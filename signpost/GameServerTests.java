@@ -0,0 +1,153 @@
+package signpost;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the GameServer class.
+ *  @author Abel Feleke
+ */
+public class GameServerTests {
+
+    /** Read lines from IN through the end of the next board, returning
+     *  its first line.  Fails if no board remains. */
+    private String readBoard(BufferedReader in) throws IOException {
+        String header;
+        do {
+            header = in.readLine();
+            assertNotNull("missing board", header);
+        } while (!header.startsWith("B["));
+        for (String line = header; !line.endsWith("]");
+             line = in.readLine()) {
+            assertNotNull("truncated board", line);
+        }
+        return header;
+    }
+
+    @Test
+    public void sessionsTest() throws Exception {
+        try (GameServer server = new GameServer(0, 42)) {
+            Thread acceptor = new Thread(server::serve);
+            acceptor.setDaemon(true);
+            acceptor.start();
+            InetAddress host = InetAddress.getLoopbackAddress();
+            try (Socket c1 = new Socket(host, server.port());
+                 Socket c2 = new Socket(host, server.port())) {
+                BufferedReader in1 = reader(c1), in2 = reader(c2);
+                PrintWriter out1 = writer(c1), out2 = writer(c2);
+                assertEquals("B[ 4x4", readBoard(in1));
+                assertEquals("B[ 4x4", readBoard(in2));
+                out1.println("type 5 4");
+                assertEquals("B[ 5x4", readBoard(in1));
+                out1.println("type 100000 100000");
+                assertEquals("Board too large: 100000x100000 (at most "
+                             + GameServer.MAX_SIDE + " on a side)",
+                             in1.readLine());
+                out2.println("solve");
+                assertEquals("B[ 4x4 (SOLVED)", readBoard(in2));
+                out1.println("frob");
+                assertEquals("Bad command: 'FROB'", in1.readLine());
+                out1.println("quit");
+                assertNull(in1.readLine());
+                out2.println("quit");
+                assertNull(in2.readLine());
+            }
+        }
+    }
+
+    @Test
+    public void badOperandsTest() throws Exception {
+        try (GameServer server = new GameServer(0, 5)) {
+            Thread acceptor = new Thread(server::serve);
+            acceptor.setDaemon(true);
+            acceptor.start();
+            InetAddress host = InetAddress.getLoopbackAddress();
+            try (Socket conn = new Socket(host, server.port())) {
+                BufferedReader in = reader(conn);
+                PrintWriter out = writer(conn);
+                assertEquals("B[ 4x4", readBoard(in));
+                for (String cmnd : new String[] {
+                        "CONN 9 9 0 0", "CONN 0 0 0 -1", "BRK 9 9",
+                        "BRK -1 0", "TYPE 0 0", "TYPE -3 4", "TYPE 1 5" }) {
+                    out.println(cmnd);
+                    assertEquals("Bad command: '" + cmnd + "'",
+                                 in.readLine());
+                }
+                out.println("solve");
+                assertEquals("B[ 4x4 (SOLVED)", readBoard(in));
+                out.println("quit");
+                assertNull(in.readLine());
+            }
+        }
+    }
+
+    @Test
+    public void pipelinedTest() throws Exception {
+        try (GameServer server = new GameServer(0, 7)) {
+            Thread acceptor = new Thread(server::serve);
+            acceptor.setDaemon(true);
+            acceptor.start();
+            InetAddress host = InetAddress.getLoopbackAddress();
+            try (Socket conn = new Socket(host, server.port())) {
+                BufferedReader in = reader(conn);
+                conn.getOutputStream()
+                    .write("# comment\ntype 5 4\n\nsolve\nquit\n"
+                           .getBytes(StandardCharsets.UTF_8));
+                assertEquals("B[ 4x4", readBoard(in));
+                assertEquals("B[ 5x4", readBoard(in));
+                assertEquals("B[ 5x4 (SOLVED)", readBoard(in));
+                assertNull(in.readLine());
+            }
+        }
+    }
+
+    @Test
+    public void idleSessionsTest() throws Exception {
+        int n = 4 * GameServer.SESSION_THREADS;
+        try (GameServer server = new GameServer(0, 11)) {
+            Thread acceptor = new Thread(server::serve);
+            acceptor.setDaemon(true);
+            acceptor.start();
+            InetAddress host = InetAddress.getLoopbackAddress();
+            Socket[] conns = new Socket[n];
+            try {
+                BufferedReader in = null;
+                for (int k = 0; k < n; k += 1) {
+                    conns[k] = new Socket(host, server.port());
+                    in = reader(conns[k]);
+                    assertEquals("B[ 4x4", readBoard(in));
+                }
+                writer(conns[n - 1]).println("solve");
+                assertEquals("B[ 4x4 (SOLVED)", readBoard(in));
+                conns[n - 1].shutdownOutput();
+                assertNull(in.readLine());
+            } finally {
+                for (Socket conn : conns) {
+                    if (conn != null) {
+                        conn.close();
+                    }
+                }
+            }
+        }
+    }
+
+    /** Return a reader for the input from CONN. */
+    private static BufferedReader reader(Socket conn) throws IOException {
+        return new BufferedReader
+            (new InputStreamReader(conn.getInputStream(),
+                                   StandardCharsets.UTF_8));
+    }
+
+    /** Return an auto-flushing writer for the output to CONN. */
+    private static PrintWriter writer(Socket conn) throws IOException {
+        return new PrintWriter(conn.getOutputStream(), true);
+    }
+
+}
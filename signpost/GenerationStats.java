@@ -0,0 +1,322 @@
+package signpost;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import static signpost.Utils.*;
+
+/** Statistics of puzzle generation, accumulated over all PuzzleGenerators
+ *  and published over JMX as OBJECT_NAME.  Each generator counts the work
+ *  done for its current puzzle in a private Counts object and adds them
+ *  here when the puzzle is finished or abandoned, so that generation
+ *  threads contend only once per puzzle, and then only on LongAdders.
+ *  Generation times are also kept in histograms for each type of puzzle,
+ *  covering the last WINDOWS periods of length WINDOW, with those of
+ *  abandoned puzzles kept separately.
+ *  @author Abel Feleke
+ */
+class GenerationStats implements GenerationStatsMXBean {
+
+    /** Name under which GLOBAL is registered. */
+    static final String OBJECT_NAME = "signpost:type=GenerationStats";
+
+    /** Length of each period of the latency histograms. */
+    static final Duration WINDOW = Duration.ofSeconds(10);
+    /** Number of periods covered by the latency histograms. */
+    static final int WINDOWS = 6;
+    /** Number of buckets in a latency histogram.  Bucket 0 counts times
+     *  under 1 ms, bucket K (0 < K < BUCKETS - 1) times from 2**(K-1) ms to
+     *  just under 2**K ms, and the last bucket all longer times. */
+    static final int BUCKETS = 16;
+
+    /** The statistics of all puzzles generated in this program. */
+    static final GenerationStats GLOBAL = register(new GenerationStats());
+
+    /** The work done in generating one puzzle. */
+    static class Counts {
+        /** Set all counts to 0. */
+        void clear() {
+            backtracks = iterations = trials = passes = restarts = sweeps = 0;
+            clues = 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d backtracks, %d iterations, %d trials,"
+                                 + " %d passes, %d restarts, %d sweeps,"
+                                 + " %d clues", backtracks, iterations,
+                                 trials, passes, restarts, sweeps, clues);
+        }
+
+        /** Steps undone by the solution path search. */
+        long backtracks;
+        /** Fixed numbers added to make the solution unique. */
+        long iterations;
+        /** Candidate fixed numbers tried. */
+        long trials;
+        /** Passes over the board removing unneeded fixed numbers. */
+        long passes;
+        /** Restarts of the board in removing fixed numbers. */
+        long restarts;
+        /** Sweeps extending unambiguous paths. */
+        long sweeps;
+        /** Fixed numbers in the finished puzzle. */
+        int clues;
+    }
+
+    /** Record the generation of a WIDTH x HEIGHT puzzle (with free ends iff
+     *  FREEENDS) that took NANOS nanoseconds and the work in COUNTS. */
+    void record(int width, int height, boolean freeEnds, long nanos,
+                Counts counts) {
+        _puzzles.increment();
+        addWork(counts);
+        _clues.add(counts.clues);
+        String type = type(width, height, freeEnds);
+        _latencies.computeIfAbsent(type, (t) -> new Histogram()).add(nanos);
+        if (nanos > _slowestNanos) {
+            synchronized (this) {
+                if (nanos > _slowestNanos) {
+                    _slowestNanos = nanos;
+                    _slowest = String.format("%s in %.1f ms: %s", type,
+                                             nanos / 1e6, counts);
+                }
+            }
+        }
+    }
+
+    /** Record the abandonment of the generation of a WIDTH x HEIGHT puzzle
+     *  (with free ends iff FREEENDS), because it was cancelled or missed
+     *  its deadline, after NANOS nanoseconds and the work in COUNTS. */
+    void recordAbandoned(int width, int height, boolean freeEnds,
+                         long nanos, Counts counts) {
+        _abandoned.increment();
+        addWork(counts);
+        _abandonedLatencies
+            .computeIfAbsent(type(width, height, freeEnds),
+                             (t) -> new Histogram())
+            .add(nanos);
+    }
+
+    /** Add the work in COUNTS, other than its clues, to my totals. */
+    private void addWork(Counts counts) {
+        _backtracks.add(counts.backtracks);
+        _iterations.add(counts.iterations);
+        _trials.add(counts.trials);
+        _passes.add(counts.passes);
+        _restarts.add(counts.restarts);
+        _sweeps.add(counts.sweeps);
+    }
+
+    /** Return the name of the type of WIDTH x HEIGHT puzzles with free
+     *  ends iff FREEENDS. */
+    private static String type(int width, int height, boolean freeEnds) {
+        return String.format("%dx%d%s", width, height, freeEnds ? "F" : "");
+    }
+
+    @Override
+    public long getPuzzles() {
+        return _puzzles.sum();
+    }
+
+    @Override
+    public long getAbandoned() {
+        return _abandoned.sum();
+    }
+
+    @Override
+    public long getBacktracks() {
+        return _backtracks.sum();
+    }
+
+    @Override
+    public long getUniquenessIterations() {
+        return _iterations.sum();
+    }
+
+    @Override
+    public long getCandidateTrials() {
+        return _trials.sum();
+    }
+
+    @Override
+    public long getTrimPasses() {
+        return _passes.sum();
+    }
+
+    @Override
+    public long getTrimRestarts() {
+        return _restarts.sum();
+    }
+
+    @Override
+    public long getPropagationSweeps() {
+        return _sweeps.sum();
+    }
+
+    @Override
+    public long getClues() {
+        return _clues.sum();
+    }
+
+    @Override
+    public long[] getLatencyBucketBoundsMillis() {
+        long[] bounds = new long[BUCKETS];
+        for (int k = 0; k < BUCKETS - 1; k += 1) {
+            bounds[k] = 1L << k;
+        }
+        bounds[BUCKETS - 1] = Long.MAX_VALUE;
+        return bounds;
+    }
+
+    @Override
+    public Map<String, long[]> getRecentLatencyHistograms() {
+        TreeMap<String, long[]> result = new TreeMap<>();
+        _latencies.forEach((type, hist) -> result.put(type, hist.recent()));
+        return result;
+    }
+
+    @Override
+    public Map<String, long[]> getRecentAbandonedLatencyHistograms() {
+        TreeMap<String, long[]> result = new TreeMap<>();
+        _abandonedLatencies.forEach((type, hist) ->
+                                    result.put(type, hist.recent()));
+        return result;
+    }
+
+    @Override
+    public synchronized String getSlowestPuzzle() {
+        return _slowest;
+    }
+
+    @Override
+    public synchronized void reset() {
+        for (LongAdder count : new LongAdder[] {
+                _puzzles, _abandoned, _backtracks, _iterations, _trials,
+                _passes, _restarts, _sweeps, _clues }) {
+            count.reset();
+        }
+        _latencies.clear();
+        _abandonedLatencies.clear();
+        _slowestNanos = 0;
+        _slowest = "";
+    }
+
+    /** Register STATS with the platform MBean server as OBJECT_NAME, and
+     *  return it.  Generation does not depend on its statistics being
+     *  published, so failure is ignored. */
+    private static GenerationStats register(GenerationStats stats) {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(stats, new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException excp) {
+            /* Leave the statistics unpublished. */
+        }
+        return stats;
+    }
+
+    /** Return the latency bucket for a time of NANOS nanoseconds. */
+    static int bucket(long nanos) {
+        long millis = nanos / 1_000_000;
+        if (millis <= 0) {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+    }
+
+    /** A histogram of generation times over the last WINDOWS periods.
+     *  The counts of each period are kept separately, and the oldest are
+     *  cleared when a new period starts. */
+    private static class Histogram {
+
+        /** An empty histogram. */
+        Histogram() {
+            for (int i = 0; i < WINDOWS; i += 1) {
+                _windows[i] = new Window();
+            }
+        }
+
+        /** Count a time of NANOS nanoseconds. */
+        void add(long nanos) {
+            long period = period();
+            Window window = _windows[Math.floorMod(period, WINDOWS)];
+            if (window.period != period) {
+                synchronized (window) {
+                    if (window.period != period) {
+                        for (LongAdder count : window.counts) {
+                            count.reset();
+                        }
+                        window.period = period;
+                    }
+                }
+            }
+            window.counts[bucket(nanos)].increment();
+        }
+
+        /** Return the counts in each bucket over the last WINDOWS
+         *  periods. */
+        long[] recent() {
+            long period = period();
+            long[] result = new long[BUCKETS];
+            for (Window window : _windows) {
+                if (window.period > period - WINDOWS) {
+                    for (int k = 0; k < BUCKETS; k += 1) {
+                        result[k] += window.counts[k].sum();
+                    }
+                }
+            }
+            return result;
+        }
+
+        /** Return the number of the current period. */
+        private static long period() {
+            return Math.floorDiv(System.nanoTime(), nanos(WINDOW));
+        }
+
+        /** The counts of each of the last WINDOWS periods, the period
+         *  numbered P being at index P mod WINDOWS. */
+        private final Window[] _windows = new Window[WINDOWS];
+    }
+
+    /** The counts of one period of a Histogram. */
+    private static class Window {
+        /** Empty counts of no period. */
+        Window() {
+            for (int k = 0; k < BUCKETS; k += 1) {
+                counts[k] = new LongAdder();
+            }
+        }
+
+        /** Number of the period counted. */
+        private volatile long period = Long.MIN_VALUE;
+        /** Counts in each bucket. */
+        private final LongAdder[] counts = new LongAdder[BUCKETS];
+    }
+
+    /** Totals of the counts of all puzzles, finished or abandoned. */
+    private final LongAdder
+        _puzzles = new LongAdder(),
+        _abandoned = new LongAdder(),
+        _backtracks = new LongAdder(),
+        _iterations = new LongAdder(),
+        _trials = new LongAdder(),
+        _passes = new LongAdder(),
+        _restarts = new LongAdder(),
+        _sweeps = new LongAdder(),
+        _clues = new LongAdder();
+    /** Latency histograms of each type of puzzle. */
+    private final ConcurrentHashMap<String, Histogram> _latencies =
+        new ConcurrentHashMap<>();
+    /** Latency histograms of each type of abandoned puzzle. */
+    private final ConcurrentHashMap<String, Histogram> _abandonedLatencies =
+        new ConcurrentHashMap<>();
+    /** Time taken by the slowest puzzle (nanoseconds). */
+    private volatile long _slowestNanos;
+    /** Description of the slowest puzzle. */
+    private String _slowest = "";
+}
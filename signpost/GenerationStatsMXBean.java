@@ -0,0 +1,68 @@
+package signpost;
+
+import java.util.Map;
+
+/** The management interface of GenerationStats, through which the
+ *  statistics of puzzle generation are published over JMX.  Counts are
+ *  totals over all puzzles generated since the last reset.  The counts of
+ *  work include that done on puzzles abandoned before they were
+ *  finished.
+ *  @author Abel Feleke
+ */
+public interface GenerationStatsMXBean {
+
+    /** Return the number of puzzles generated. */
+    long getPuzzles();
+
+    /** Return the number of puzzles abandoned before they were finished,
+     *  because they were cancelled or missed their deadlines. */
+    long getAbandoned();
+
+    /** Return the number of steps undone by the solution path search. */
+    long getBacktracks();
+
+    /** Return the number of fixed numbers added to make solutions
+     *  unique. */
+    long getUniquenessIterations();
+
+    /** Return the number of candidate fixed numbers tried in making
+     *  solutions unique. */
+    long getCandidateTrials();
+
+    /** Return the number of passes made over boards in removing unneeded
+     *  fixed numbers. */
+    long getTrimPasses();
+
+    /** Return the number of times boards were restarted to test the
+     *  removal of a fixed number. */
+    long getTrimRestarts();
+
+    /** Return the number of sweeps made in extending unambiguous
+     *  paths. */
+    long getPropagationSweeps();
+
+    /** Return the number of fixed numbers in all finished puzzles. */
+    long getClues();
+
+    /** Return the upper bounds (exclusive, in milliseconds) of the buckets
+     *  of the latency histograms.  The last is Long.MAX_VALUE. */
+    long[] getLatencyBucketBoundsMillis();
+
+    /** Return the histograms of the generation times of recent puzzles,
+     *  keyed by puzzle type (WxH, followed by F for free ends).  Each
+     *  gives the number of puzzles in each bucket over about the last
+     *  minute. */
+    Map<String, long[]> getRecentLatencyHistograms();
+
+    /** Return histograms, as for getRecentLatencyHistograms, of the times
+     *  after which recent puzzles were abandoned. */
+    Map<String, long[]> getRecentAbandonedLatencyHistograms();
+
+    /** Return a description of the slowest puzzle generated: its type,
+     *  time, and counts. */
+    String getSlowestPuzzle();
+
+    /** Reset all statistics. */
+    void reset();
+
+}
@@ -0,0 +1,97 @@
+package signpost;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import signpost.Model.Sq;
+
+/** Tests of the GenerationStats class.
+ *  @author Abel Feleke
+ */
+public class GenerationStatsTests {
+
+    @Test
+    public void countsTest() {
+        PuzzleGenerator puzzler = new PuzzleGenerator(5);
+        long puzzles = GenerationStats.GLOBAL.getPuzzles();
+        Model puzzle = puzzler.getPuzzle(5, 5, true);
+        GenerationStats.Counts counts = puzzler.counts();
+        int clues;
+        clues = 0;
+        for (Sq sq : puzzle) {
+            if (sq.hasFixedNum()) {
+                clues += 1;
+            }
+        }
+        assertEquals("clue count", clues, counts.clues);
+        assertTrue("sweeps counted", counts.sweeps > 0);
+        assertTrue("trim passes counted", counts.passes > 0);
+        assertTrue("puzzle recorded",
+                   GenerationStats.GLOBAL.getPuzzles() > puzzles);
+    }
+
+    @Test
+    public void histogramTest() {
+        GenerationStats stats = new GenerationStats();
+        GenerationStats.Counts counts = new GenerationStats.Counts();
+        counts.backtracks = 7;
+        counts.clues = 3;
+        stats.record(4, 4, false, 500_000, counts);
+        stats.record(4, 4, false, 3_000_000, counts);
+        stats.record(6, 5, true, 1L << 50, counts);
+        assertEquals(3, stats.getPuzzles());
+        assertEquals(21, stats.getBacktracks());
+        assertEquals(9, stats.getClues());
+        Map<String, long[]> hists = stats.getRecentLatencyHistograms();
+        long[] bounds = stats.getLatencyBucketBoundsMillis();
+        assertEquals(bounds.length, hists.get("4x4").length);
+        assertEquals(1, hists.get("4x4")[0]);
+        assertEquals(1, hists.get("4x4")[GenerationStats.bucket(3_000_000)]);
+        assertTrue(bounds[GenerationStats.bucket(3_000_000)] > 3);
+        assertEquals(1, hists.get("6x5F")[bounds.length - 1]);
+        assertTrue(stats.getSlowestPuzzle().startsWith("6x5F"));
+        stats.reset();
+        assertEquals(0, stats.getPuzzles());
+        assertTrue(stats.getRecentLatencyHistograms().isEmpty());
+    }
+
+    @Test
+    public void abandonedTest() {
+        GenerationStats stats = new GenerationStats();
+        GenerationStats.Counts counts = new GenerationStats.Counts();
+        counts.backtracks = 5;
+        counts.clues = 2;
+        stats.recordAbandoned(9, 9, false, 20_000_000, counts);
+        assertEquals(0, stats.getPuzzles());
+        assertEquals(1, stats.getAbandoned());
+        assertEquals(5, stats.getBacktracks());
+        assertEquals(0, stats.getClues());
+        assertTrue(stats.getRecentLatencyHistograms().isEmpty());
+        Map<String, long[]> hists = stats.getRecentAbandonedLatencyHistograms();
+        assertEquals(1, hists.get("9x9")[GenerationStats.bucket(20_000_000)]);
+        stats.reset();
+        assertEquals(0, stats.getAbandoned());
+        assertTrue(stats.getRecentAbandonedLatencyHistograms().isEmpty());
+    }
+
+    @Test
+    public void mbeanTest() throws Exception {
+        new PuzzleGenerator(6).getPuzzle(4, 4, false);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(GenerationStats.OBJECT_NAME);
+        assertTrue("puzzles published",
+                   (Long) server.getAttribute(name, "Puzzles") > 0);
+        TabularData hists =
+            (TabularData) server.getAttribute(name,
+                                              "RecentLatencyHistograms");
+        assertNotNull("4x4 histogram published",
+                      hists.get(new Object[] { "4x4" }));
+    }
+
+}
@@ -0,0 +1,89 @@
+package signpost;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static signpost.Utils.*;
+
+/** Hibernates idle sessions.  Each registered Controller that has been
+ *  idle for a given time has its puzzle and undo history written to a
+ *  snapshot file in a given directory and released from memory; the
+ *  Controller restores them itself on its next command.  Thus memory use
+ *  grows with the number of active sessions rather than the number of
+ *  connected ones.
+ *  @author Abel Feleke
+ */
+class Hibernator implements AutoCloseable {
+
+    /** Default idle time after which sessions are hibernated. */
+    static final Duration DEFAULT_IDLE = Duration.ofMinutes(1);
+
+    /** A Hibernator that writes snapshots of sessions idle for at least
+     *  IDLE to files in DIR, which is created if necessary. */
+    Hibernator(Path dir, Duration idle) throws IOException {
+        _dir = Files.createDirectories(dir);
+        _idle = nanos(idle);
+        long period = Math.max(1, _idle / 2);
+        _sweeper.scheduleAtFixedRate(this::sweep, period, period,
+                                     TimeUnit.NANOSECONDS);
+    }
+
+    /** Start watching SESSION for idleness. */
+    void register(Controller session) {
+        _sessions.put(session, _dir.resolve(String.format("session-%d.snap",
+                                            _count.getAndIncrement())));
+    }
+
+    /** Stop watching SESSION, discarding any snapshot of it. */
+    void unregister(Controller session) {
+        _sessions.remove(session);
+        session.discardSnapshot();
+    }
+
+    /** Hibernate all registered sessions that have been idle for my idle
+     *  time and are not already hibernated. */
+    void sweep() {
+        long now = System.nanoTime();
+        _sessions.forEach((session, file) -> {
+            if (now - session.lastActive() >= _idle
+                && !session.hibernated()) {
+                try {
+                    session.hibernate(file);
+                } catch (IOException excp) {
+                    System.err.printf("Could not hibernate session: %s%n",
+                                      excp.getMessage());
+                }
+            }
+        });
+    }
+
+    /** Stop hibernating sessions. */
+    @Override
+    public void close() {
+        _sweeper.shutdownNow();
+    }
+
+    /** Directory holding snapshots. */
+    private final Path _dir;
+    /** Idle time in nanoseconds before hibernation. */
+    private final long _idle;
+    /** Registered sessions and their snapshot files. */
+    private final ConcurrentHashMap<Controller, Path> _sessions =
+        new ConcurrentHashMap<>();
+    /** Number of sessions registered. */
+    private final AtomicLong _count = new AtomicLong();
+    /** Periodically checks for idle sessions. */
+    private final ScheduledExecutorService _sweeper =
+        Executors.newSingleThreadScheduledExecutor((r) -> {
+            Thread t = new Thread(r, "hibernator");
+            t.setDaemon(true);
+            return t;
+        });
+}
@@ -0,0 +1,64 @@
+package signpost;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of session hibernation.
+ *  @author Abel Feleke
+ */
+public class HibernatorTests {
+
+    /** Return a testing Controller printing on OUT, with puzzles generated
+     *  from SEED, that has started a puzzle. */
+    private Controller session(ByteArrayOutputStream out, long seed) {
+        Controller result = ControllerTests.session(out, seed);
+        result.startPuzzle();
+        return result;
+    }
+
+    @Test
+    public void restoreTest() throws Exception {
+        Path dir = Files.createTempDirectory("hibernate");
+        ByteArrayOutputStream out1 = new ByteArrayOutputStream(),
+            out2 = new ByteArrayOutputStream();
+        Controller plain = session(out1, 3), hibernating = session(out2, 3);
+        Command cmnd = new Command();
+        for (String line : ControllerTests.COMMANDS) {
+            plain.execute(cmnd.decode(line));
+            Path file = dir.resolve("s.snap");
+            hibernating.hibernate(file);
+            assertTrue("not hibernated", hibernating.hibernated());
+            assertTrue("no snapshot", Files.exists(file));
+            hibernating.execute(cmnd.decode(line));
+            assertFalse("not restored", hibernating.hibernated());
+            assertFalse("snapshot not deleted", Files.exists(file));
+        }
+        assertEquals(out1.toString(), out2.toString());
+        Files.delete(dir);
+    }
+
+    @Test
+    public void idleTest() throws Exception {
+        Path dir = Files.createTempDirectory("hibernate");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Controller session = session(out, 5);
+        try (Hibernator hibernator =
+             new Hibernator(dir, Duration.ofMillis(20))) {
+            hibernator.register(session);
+            for (int i = 0; i < 200 && !session.hibernated(); i += 1) {
+                Thread.sleep(10);
+            }
+            assertTrue("idle session not hibernated", session.hibernated());
+            session.execute(new Command().decode("solve"));
+            assertFalse("session not restored", session.hibernated());
+            hibernator.unregister(session);
+        }
+        Files.delete(dir);
+    }
+
+}
@@ -0,0 +1,242 @@
+package signpost;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardCopyOption.*;
+import static java.nio.file.StandardOpenOption.*;
+import static signpost.Utils.*;
+
+/** An append-only, write-ahead journal of one session, from which the
+ *  session can be rebuilt after its process dies.  The journal is a
+ *  sequence of records, each a checkpoint (the complete state of the
+ *  session, as supplied by its Controller) or an accepted command.  A
+ *  session is rebuilt by restoring its latest checkpoint and replaying
+ *  the commands that follow it.
+ *  <p>
+ *  Records are written to the file as they are appended, so they survive
+ *  the death of the process at once.  Forcing them to the storage device
+ *  is costlier, and is done for all journals with unforced records by a
+ *  single background thread every COMMIT_INTERVAL (a group commit), so
+ *  that appending never waits for the device.  Each record is its length
+ *  and a CRC-32 of its contents (ints), its kind (a byte), and its
+ *  contents.  A record that was only partly written when the process
+ *  died is discarded on reopening.
+ *  @author Abel Feleke
+ */
+class Journal implements AutoCloseable {
+
+    /** Kind of a record holding a checkpoint. */
+    static final byte CHECKPOINT = 1;
+    /** Kind of a record holding the text of a command. */
+    static final byte COMMAND = 2;
+
+    /** Time between group commits. */
+    static final Duration COMMIT_INTERVAL = Duration.ofMillis(5);
+
+    /** Size of a journal beyond which a new checkpoint replaces its whole
+     *  contents rather than being appended. */
+    static final long COMPACT_SIZE = 1 << 20;
+
+    /** Size of the header of each record. */
+    private static final int HEADER_SIZE = 9;
+
+    /** A journal kept in FILE, which is created if necessary.  If FILE
+     *  holds an earlier journal, its latest checkpoint and the commands
+     *  after it are available from lastCheckpoint() and commands(), and
+     *  new records are appended to it. */
+    Journal(Path file) throws IOException {
+        _file = file;
+        _chan = FileChannel.open(file, CREATE, READ, WRITE);
+        recover();
+    }
+
+    /** Return the contents of the latest checkpoint recorded when I was
+     *  opened, or null if there was none. */
+    ByteBuffer lastCheckpoint() {
+        return _checkpoint == null ? null : _checkpoint.duplicate();
+    }
+
+    /** Return the texts of the commands recorded after lastCheckpoint()
+     *  when I was opened. */
+    List<String> commands() {
+        return _commands;
+    }
+
+    /** Append the text of COMMAND. */
+    synchronized void append(CharSequence command) throws IOException {
+        write(COMMAND,
+              ByteBuffer.wrap(command.toString()
+                              .getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /** Append a checkpoint holding STATE (from its position to its
+     *  limit), which supersedes all earlier records.  If I have grown
+     *  beyond COMPACT_SIZE, replace my contents with this checkpoint. */
+    synchronized void checkpoint(ByteBuffer state) throws IOException {
+        if (_chan.size() < COMPACT_SIZE) {
+            write(CHECKPOINT, state);
+            return;
+        }
+        Path tmp = _file.resolveSibling(_file.getFileName() + ".tmp");
+        try (FileChannel chan = FileChannel.open(tmp, CREATE, WRITE,
+                                                 TRUNCATE_EXISTING)) {
+            writeFully(chan, record(CHECKPOINT, state));
+            chan.force(true);
+        }
+        Files.move(tmp, _file, ATOMIC_MOVE, REPLACE_EXISTING);
+        FileChannel old = _chan;
+        _chan = FileChannel.open(_file, WRITE);
+        _chan.position(_chan.size());
+        old.close();
+    }
+
+    /** Force all my records to the storage device. */
+    void commit() throws IOException {
+        _dirty.set(false);
+        _chan.force(false);
+    }
+
+    /** Commit my records and close me. */
+    @Override
+    public synchronized void close() throws IOException {
+        DIRTY.remove(this);
+        if (_chan.isOpen()) {
+            commit();
+            _chan.close();
+        }
+    }
+
+    /** Close me and delete my file, as when my session ends normally. */
+    synchronized void delete() throws IOException {
+        DIRTY.remove(this);
+        _chan.close();
+        Files.deleteIfExists(_file);
+    }
+
+    /** Append a record of kind KIND holding CONTENTS, and arrange for it to
+     *  be committed. */
+    private void write(byte kind, ByteBuffer contents) throws IOException {
+        writeFully(_chan, record(kind, contents));
+        if (_dirty.compareAndSet(false, true)) {
+            DIRTY.add(this);
+        }
+    }
+
+    /** Return a record of kind KIND holding CONTENTS, ready for
+     *  writing. */
+    private static ByteBuffer record(byte kind, ByteBuffer contents) {
+        ByteBuffer rec = ByteBuffer.allocate(HEADER_SIZE
+                                             + contents.remaining());
+        CRC32 crc = new CRC32();
+        crc.update(contents.duplicate());
+        rec.putInt(contents.remaining()).putInt((int) crc.getValue());
+        rec.put(kind).put(contents.duplicate());
+        rec.flip();
+        return rec;
+    }
+
+    /** Write all of BUF to CHAN. */
+    private static void writeFully(FileChannel chan, ByteBuffer buf)
+        throws IOException {
+        while (buf.hasRemaining()) {
+            chan.write(buf);
+        }
+    }
+
+    /** Read my existing records, saving the latest checkpoint and the
+     *  commands after it, and discard any partly written record at the
+     *  end. */
+    private void recover() throws IOException {
+        ByteBuffer in = ByteBuffer.allocate((int) _chan.size());
+        while (in.hasRemaining() && _chan.read(in, in.position()) >= 0) {
+            continue;
+        }
+        in.flip();
+        CRC32 crc = new CRC32();
+        while (in.remaining() >= HEADER_SIZE) {
+            int start = in.position();
+            int length = in.getInt(), sum = in.getInt();
+            byte kind = in.get();
+            if (length < 0 || length > in.remaining()) {
+                in.position(start);
+                break;
+            }
+            ByteBuffer contents = in.slice();
+            contents.limit(length);
+            crc.reset();
+            crc.update(contents.duplicate());
+            if ((int) crc.getValue() != sum
+                || (kind != CHECKPOINT && kind != COMMAND)) {
+                in.position(start);
+                break;
+            }
+            in.position(in.position() + length);
+            if (kind == CHECKPOINT) {
+                _checkpoint = contents.asReadOnlyBuffer();
+                _commands.clear();
+            } else {
+                _commands.add(StandardCharsets.UTF_8.decode(contents)
+                              .toString());
+            }
+        }
+        _chan.truncate(in.position());
+        _chan.position(in.position());
+    }
+
+    /** Force the records of all journals appended to since they were
+     *  last committed. */
+    private static void groupCommit() {
+        for (Journal journal : DIRTY) {
+            DIRTY.remove(journal);
+            try {
+                journal.commit();
+            } catch (IOException excp) {
+                /* The channel was closed or replaced; its owner commits
+                 * on closing. */
+            }
+        }
+    }
+
+    /** Journals with records appended since they were last committed. */
+    private static final Set<Journal> DIRTY = ConcurrentHashMap.newKeySet();
+
+    /** Periodically commits journals. */
+    private static final ScheduledExecutorService COMMITTER =
+        Executors.newSingleThreadScheduledExecutor((r) -> {
+            Thread t = new Thread(r, "journal-commit");
+            t.setDaemon(true);
+            return t;
+        });
+
+    static {
+        long period = nanos(COMMIT_INTERVAL);
+        COMMITTER.scheduleAtFixedRate(Journal::groupCommit, period, period,
+                                      TimeUnit.NANOSECONDS);
+    }
+
+    /** My file. */
+    private final Path _file;
+    /** Channel to my file, positioned at its end. */
+    private volatile FileChannel _chan;
+    /** True iff records have been appended since I was last committed. */
+    private final AtomicBoolean _dirty = new AtomicBoolean();
+    /** Latest checkpoint found on opening, or null. */
+    private ByteBuffer _checkpoint;
+    /** Commands following _checkpoint found on opening. */
+    private final ArrayList<String> _commands = new ArrayList<>();
+}
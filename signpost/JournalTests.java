@@ -0,0 +1,75 @@
+package signpost;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static java.nio.file.StandardOpenOption.*;
+import static signpost.ControllerTests.COMMANDS;
+import static signpost.ControllerTests.lastBoard;
+import static signpost.ControllerTests.session;
+
+/** Tests of session journals.
+ *  @author Abel Feleke
+ */
+public class JournalTests {
+
+    @Test
+    public void recordsTest() throws Exception {
+        Path file = Files.createTempFile("journal", ".wal");
+        Journal journal = new Journal(file);
+        assertNull("empty journal", journal.lastCheckpoint());
+        journal.append("CONN 0 0 1 1");
+        journal.checkpoint(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+        journal.append("UNDO");
+        journal.append("SOLVE");
+        journal.close();
+        long size = Files.size(file);
+        try (FileChannel chan = FileChannel.open(file, WRITE, APPEND)) {
+            chan.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 40, 7, 7 }));
+        }
+
+        journal = new Journal(file);
+        ByteBuffer state = journal.lastCheckpoint();
+        assertEquals("checkpoint", ByteBuffer.wrap(new byte[] { 1, 2, 3 }),
+                     state);
+        assertEquals("commands after checkpoint",
+                     Arrays.asList("UNDO", "SOLVE"), journal.commands());
+        assertEquals("torn record discarded", size, Files.size(file));
+        journal.delete();
+        assertFalse("journal deleted", Files.exists(file));
+    }
+
+    @Test
+    public void resumeTest() throws Exception {
+        Path file = Files.createTempFile("journal", ".wal");
+        Files.delete(file);
+        ByteArrayOutputStream out1 = new ByteArrayOutputStream(),
+            out2 = new ByteArrayOutputStream();
+        Controller first = session(out1, 3);
+        Journal journal1 = new Journal(file);
+        first.setJournal(journal1);
+        first.startPuzzle();
+        Command cmnd = new Command();
+        for (String line : COMMANDS) {
+            first.execute(cmnd.decode(line));
+        }
+
+        Controller second = session(out2, 17);
+        Journal journal2 = new Journal(file);
+        second.setJournal(journal2);
+        second.startPuzzle();
+        assertEquals("resumed board", lastBoard(out1), lastBoard(out2));
+        second.execute(cmnd.decode("solve"));
+        assertTrue("resumed puzzle solved", lastBoard(out2).contains("SOLVED"));
+        journal1.close();
+        journal2.delete();
+    }
+
+}
@@ -1,8 +1,10 @@
 package signpost;
 
-import java.util.Scanner;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 
 import ucb.util.CommandArgs;
 
@@ -15,32 +17,48 @@ public class Main {
      *  (random seed); --log (record commands, clicks);
      *  --testing (take puzzles and commands from standard input);
      *  --setup (take puzzles from standard input and commands from GUI);
-     *  and --no-display. */
+     *  --pack=FILE (take puzzles from the puzzle pack FILE);
+     *  --minimize=MS (spend up to MS milliseconds removing unneeded fixed
+     *  numbers from each generated puzzle);
+     *  --serve=PORT (serve games to clients connecting to PORT on the local
+     *  host); --hibernate=DIR (with --serve, save idle sessions in DIR);
+     *  --spectators=PORT (broadcast the board to spectators connecting
+     *  to PORT on the local host); --diff-log (with --testing, print each
+     *  board but the first of a puzzle as just its changed squares);
+     *  --journal=PATH (journal progress in the file PATH, or with --serve,
+     *  in files in the directory PATH, resuming any sessions journaled
+     *  there when the program last died, each for whichever client next
+     *  connects); and --no-display. */
     public static void main(String... args) {
 
         CommandArgs options =
             new CommandArgs("--seed=(\\d+) --log --setup --testing "
-                            + "--no-display --=(.*)",
+                            + "--diff-log --no-display --pack=(.+) "
+                            + "--minimize=(\\d+) "
+                            + "--serve=(\\d+) --hibernate=(.+) "
+                            + "--spectators=(\\d+) --journal=(.+) "
+                            + "--=(.*)",
                             args);
         if (!options.ok()) {
             System.err.println("Usage: java signpost.Main [ --seed=NUM ] "
-                               + "[ --setup ] "
-                               + "[ --log ] [ --testing ] [ --no-display ]"
+                               + "[ --setup ] [ --pack=FILE ] "
+                               + "[ --minimize=MS ] "
+                               + "[ --serve=PORT [ --hibernate=DIR ] ] "
+                               + "[ --spectators=PORT ] "
+                               + "[ --journal=PATH ] "
+                               + "[ --log ] [ --testing [ --diff-log ] ] "
+                               + "[ --no-display ]"
                                + " [ INPUT ]");
             System.exit(1);
         }
 
-        if (options.contains("--")) {
-            String inpFile = options.getFirst("--");
-            try {
-                System.setIn(new FileInputStream(inpFile));
-            } catch (IOException excp) {
-                System.err.printf("Could not open %s%n", inpFile);
-                System.exit(1);
-            }
+        if (options.contains("--serve")) {
+            serve(options);
+            return;
         }
 
         Controller puzzler = getController(options);
+        Journal journal = getJournal(puzzler, options);
 
         try {
             while (puzzler.solving()) {
@@ -51,12 +69,73 @@ public class Main {
             System.exit(1);
         }
 
+        if (journal != null) {
+            try {
+                journal.delete();
+            } catch (IOException excp) {
+                System.err.printf("Could not delete journal: %s%n",
+                                  excp.getMessage());
+            }
+        }
+
         if (options.contains("--no-display") || options.contains("--testing")) {
             System.exit(0);
         }
 
     }
 
+    /** Run a GameServer on the port given by OPTIONS until killed. */
+    private static void serve(CommandArgs options) {
+        int port = options.getInt("--serve");
+        Hibernator hibernator = null;
+        try {
+            if (options.contains("--hibernate")) {
+                hibernator =
+                    new Hibernator(Paths.get(options.getFirst("--hibernate")),
+                                   Hibernator.DEFAULT_IDLE);
+            }
+            Path journals = options.contains("--journal")
+                ? Paths.get(options.getFirst("--journal")) : null;
+            new GameServer(port, getSeed(options), hibernator, journals)
+                .serve();
+        } catch (IOException excp) {
+            System.err.printf("Could not serve on port %d: %s%n", port,
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** If OPTIONS requests a journal, open it and have PUZZLER record its
+     *  progress there (resuming the puzzle it records, if any), and
+     *  return it.  Otherwise return null. */
+    private static Journal getJournal(Controller puzzler,
+                                      CommandArgs options) {
+        if (!options.contains("--journal")) {
+            return null;
+        }
+        String journalFile = options.getFirst("--journal");
+        try {
+            Journal journal = new Journal(Paths.get(journalFile));
+            puzzler.setJournal(journal);
+            return journal;
+        } catch (IOException excp) {
+            System.err.printf("Could not open journal %s: %s%n", journalFile,
+                              excp.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /** Return the random seed given by OPTIONS, or a random one if there
+     *  is none. */
+    private static long getSeed(CommandArgs options) {
+        if (options.contains("--seed")) {
+            return options.getLong("--seed");
+        } else {
+            return (long) (Math.random() * SEED_RANGE);
+        }
+    }
+
     /** Return an appropriate Controller as indicated by OPTIONS. */
     private static Controller getController(CommandArgs options) {
         GUI gui;
@@ -74,28 +153,86 @@ public class Main {
             System.exit(1);
             return null;
         } else if (options.contains("--testing")) {
-            TestSource src = new TestSource(new Scanner(System.in));
+            TestSource src = getTestSource(options);
             cmds = src;
             puzzles = src;
         } else if (options.contains("--setup")) {
             cmds = new GUISource(gui);
-            puzzles = new TestSource(new Scanner(System.in));
+            puzzles = getTestSource(options);
         } else {
             cmds = new GUISource(gui);
-            long seed;
-            if (options.contains("--seed")) {
-                seed = options.getLong("--seed");
+            long seed = getSeed(options);
+            if (options.contains("--pack")) {
+                String packFile = options.getFirst("--pack");
+                try {
+                    puzzles = new PuzzlePackSource(Paths.get(packFile), seed);
+                } catch (IOException excp) {
+                    System.err.printf("Could not open %s%n", packFile);
+                    System.exit(1);
+                    return null;
+                }
             } else {
-                seed = (long) (Math.random() * SEED_RANGE);
+                PuzzleGenerator generator = new PuzzleGenerator(seed);
+                if (options.contains("--minimize")) {
+                    generator.setClueBudget
+                        (Duration.ofMillis(options.getLong("--minimize")));
+                }
+                puzzles =
+                    new CachingPuzzleSource(generator,
+                                            new PuzzleCache(PUZZLE_CACHE_SIZE),
+                                            seed);
+                puzzles =
+                    new PrefetchingPuzzleSource(puzzles, seed,
+                                                PrefetchingPuzzleSource
+                                                .DEFAULT_CAPACITY);
             }
-            puzzles = new PuzzleGenerator(seed);
         }
 
-        return new Controller(gui, cmds, puzzles,
-                              options.contains("--log"),
-                              options.contains("--testing"));
+        Controller puzzler =
+            new Controller(getView(gui, options), cmds, puzzles,
+                           options.contains("--log"),
+                           options.contains("--testing"));
+        puzzler.setDiffLogging(options.contains("--diff-log"));
+        return puzzler;
+    }
+
+    /** Return GUI (which may be null), wrapped in a BroadcastView that
+     *  listens for spectators if OPTIONS requests it. */
+    private static View getView(GUI gui, CommandArgs options) {
+        if (!options.contains("--spectators")) {
+            return gui;
+        }
+        int port = options.getInt("--spectators");
+        BroadcastView view = new BroadcastView(gui);
+        try {
+            view.listen(port);
+        } catch (IOException excp) {
+            System.err.printf("Could not listen on port %d: %s%n", port,
+                              excp.getMessage());
+            System.exit(1);
+        }
+        return view;
+    }
+
+    /** Return a TestSource that reads the INPUT file given in OPTIONS, or
+     *  the standard input if there is none. */
+    private static TestSource getTestSource(CommandArgs options) {
+        if (!options.contains("--")) {
+            return new TestSource(Channels.newChannel(System.in));
+        }
+        String inpFile = options.getFirst("--");
+        try {
+            return new TestSource(Paths.get(inpFile));
+        } catch (IOException excp) {
+            System.err.printf("Could not open %s%n", inpFile);
+            System.exit(1);
+            return null;
+        }
     }
 
+    /** Size in bytes of the cache of generated puzzles. */
+    private static final long PUZZLE_CACHE_SIZE = 1 << 24;
+
     /** Maximum default seed. */
     private static final double SEED_RANGE = 1e12;
 }
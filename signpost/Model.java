@@ -1,6 +1,7 @@
 package signpost;
 
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Formatter;
@@ -94,17 +95,20 @@ class Model implements Iterable<Model.Sq> {
         deepCopy(solution, _solution);
         _board = new Sq[_width][_height];
         _solnNumToPlace = new Place[last + 1];
-        for (int check = 1; check != last; check++) {
-            boolean insol = false;
-            for (int[] lst : solution) {
-                for (int n : lst) {
-                    if (n == check) {
-                        insol = true;
-                    }
+        for (int[] lst : solution) {
+            for (int n : lst) {
+                if (n >= 1 && n <= last) {
+                    allNums.set(n);
                 }
             }
-            if (!insol) {
-                throw badArgs("IllegalArgumentException");
+        }
+        if (allNums.nextClearBit(1) < last) {
+            throw badArgs("IllegalArgumentException");
+        }
+        _solnNumToPlace[0] = null;
+        for (int i = 0; i < solution.length; i++) {
+            for (int j = 0; j < solution[i].length; j++) {
+                _solnNumToPlace[solution[i][j]] = pl(i, j);
             }
         }
         for (int i = 0; i < solution.length; i++) {
@@ -119,12 +123,6 @@ class Model implements Iterable<Model.Sq> {
                 }
             }
         }
-        _solnNumToPlace[0] = null;
-        for (int i = 0; i < solution.length; i++) {
-            for (int j = 0; j < solution[i].length; j++) {
-                _solnNumToPlace[solution[i][j]] = get(i, j).pl;
-            }
-        }
         for (Sq[] lst : _board) {
             for (Sq sqr : lst) {
                 _allSquares.add(sqr);
@@ -144,7 +142,8 @@ class Model implements Iterable<Model.Sq> {
     }
 
     /**
-     * Initializes a copy of MODEL.
+     * Initializes a copy of MODEL, including its connections, sequence
+     * numbers, groups, and fixed numbers.
      */
     Model(Model model) {
         _width = model.width();
@@ -156,19 +155,6 @@ class Model implements Iterable<Model.Sq> {
         _allSuccessors = model._allSuccessors;
         int last = _width * _height;
         _board = new Sq[_width][_height];
-        for (int i = 1; i != last; i++) {
-            boolean insol = false;
-            for (int[] lst : _solution) {
-                for (int n : lst) {
-                    if (n == i) {
-                        insol = true;
-                    }
-                }
-            }
-            if (!insol) {
-                throw badArgs("IllegalArgumentException");
-            }
-        }
         for (int i = 0; i < _solution.length; i++) {
             for (int j = 0; j < _solution[i].length; j++) {
                 if (_solution[i][j] == 1) {
@@ -198,6 +184,27 @@ class Model implements Iterable<Model.Sq> {
                 get(pl.x, pl.y)._predecessors.add(pl(sqr.x, sqr.y));
             }
         }
+        copyState(model);
+    }
+
+    /**
+     * Set the fixed numbers, sequence numbers, groups, and connections of
+     * my squares to those of the corresponding squares of MODEL, which
+     * must have the same solution as I do.
+     */
+    private void copyState(Model model) {
+        for (Sq sq : _allSquares) {
+            Sq src = model.get(sq);
+            sq._hasFixedNum = src._hasFixedNum;
+            sq._sequenceNum = src._sequenceNum;
+            sq._group = src._group;
+            sq._head = get(src._head);
+            sq._successor = get(src._successor);
+            sq._predecessor = get(src._predecessor);
+        }
+        _unconnected = model._unconnected;
+        _usedGroups.clear();
+        _usedGroups.addAll(model._usedGroups);
     }
     /**
      * Returns the width (number of columns of cells) of the board.
@@ -312,6 +319,86 @@ class Model implements Iterable<Model.Sq> {
         return p == null ? null : _board[p.x][p.y];
     }
 
+    /**
+     * Return an upper bound on the number of bytes written by writeState.
+     */
+    int stateSize() {
+        return 12 + 4 * _usedGroups.size() + STATE_RECORD_SIZE * size();
+    }
+
+    /**
+     * Write to OUT the fixed numbers, sequence numbers, groups, and
+     * connections of my squares, and the other mutable parts of my state.
+     * If BASE is non-null, it must have the same solution as I do, and
+     * only squares whose state differs from that of the corresponding
+     * square of BASE are written.
+     */
+    void writeState(ByteBuffer out, Model base) {
+        out.putInt(_unconnected);
+        out.putInt(_usedGroups.size());
+        for (int group : _usedGroups) {
+            out.putInt(group);
+        }
+        int countPosn = out.position();
+        int count = 0;
+        out.putInt(0);
+        for (Sq sq : _allSquares) {
+            Sq old = base == null ? null : base.get(sq);
+            if (old == null || old._hasFixedNum != sq._hasFixedNum
+                || old._sequenceNum != sq._sequenceNum
+                || old._group != sq._group
+                || (old._successor == null) != (sq._successor == null)
+                || (old._successor != null
+                    && old._successor.pl != sq._successor.pl)) {
+                out.putInt(sq.x * _height + sq.y);
+                out.putInt(sq._successor == null ? -1
+                           : sq._successor.x * _height + sq._successor.y);
+                out.putInt(sq._sequenceNum);
+                out.putInt(sq._group);
+                out.put((byte) (sq._hasFixedNum ? 1 : 0));
+                count += 1;
+            }
+        }
+        out.putInt(countPosn, count);
+    }
+
+    /**
+     * Read a state written by writeState from IN, and apply it to me.  If
+     * it was written relative to a base model, I must currently be in the
+     * same state as that model.
+     */
+    void readState(ByteBuffer in) {
+        _unconnected = in.getInt();
+        _usedGroups.clear();
+        for (int n = in.getInt(); n > 0; n -= 1) {
+            _usedGroups.add(in.getInt());
+        }
+        for (int n = in.getInt(); n > 0; n -= 1) {
+            int cell = in.getInt(), next = in.getInt();
+            Sq sq = _board[cell / _height][cell % _height];
+            sq._successor =
+                next == -1 ? null : _board[next / _height][next % _height];
+            sq._sequenceNum = in.getInt();
+            sq._group = in.getInt();
+            sq._hasFixedNum = in.get() != 0;
+        }
+        for (Sq sq : _allSquares) {
+            sq._predecessor = null;
+        }
+        for (Sq sq : _allSquares) {
+            if (sq._successor != null) {
+                sq._successor._predecessor = sq;
+            }
+        }
+        for (Sq sq : _allSquares) {
+            if (sq._predecessor == null) {
+                for (Sq ptr = sq; ptr != null; ptr = ptr._successor) {
+                    ptr._head = sq;
+                }
+            }
+        }
+    }
+
     /**
      * Return the cell at the same position as SQ (generally from another
      * board), or null if SQ is null.
@@ -362,15 +449,11 @@ class Model implements Iterable<Model.Sq> {
      */
     public int arrowDirection(int x, int y) {
         int seq0 = _solution[x][y];
-        for (int count = 0; count < solution().length; count++) {
-            for (int count2 = 0; count2 < solution()[x].length; count2++) {
-                if (solution()[count][count2] == seq0 + 1) {
-                    return dirOf(x, y, count, count2);
-                }
-
-            }
+        if (seq0 + 1 >= _solnNumToPlace.length) {
+            return 0;
         }
-        return 0;
+        Place next = _solnNumToPlace[seq0 + 1];
+        return next == null ? 0 : dirOf(x, y, next.x, next.y);
     }
 
     /**
@@ -908,6 +991,11 @@ class Model implements Iterable<Model.Sq> {
         private PlaceList _successors;
     }
 
+    /**
+     * Size in bytes of the state of one square as written by writeState.
+     */
+    private static final int STATE_RECORD_SIZE = 17;
+
     /**
      * ASCII denotations of arrows, indexed by direction.
      */
@@ -1,6 +1,7 @@
 package signpost;
 
 import static java.util.Arrays.asList;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.HashMap;
@@ -148,6 +149,61 @@ public class ModelTests {
                 model1Sqs.keySet(), model2Sqs);
     }
 
+    @Test
+    public void copyConnectedTest() {
+        Model model1 = new Model(tr(SOLN1));
+        for (int k = 3; k < 7; k += 1) {
+            model1.solnNumToSq(k).connect(model1.solnNumToSq(k + 1));
+        }
+        model1.solnNumToSq(9).connect(model1.solnNumToSq(10));
+        Model model2 = new Model(model1);
+        assertEquals("copy should have same state", model1, model2);
+        assertEquals("copy should print the same", model1.toString(),
+                     model2.toString());
+        model2.solnNumToSq(4).disconnect();
+        assertNotNull("original should be unaffected by copy",
+                      model1.solnNumToSq(4).successor());
+    }
+
+    @Test
+    public void copyFixedTest() {
+        Model model1 = new Model(tr(SOLN1));
+        model1.solnNumToSq(8).setFixedNum(8);
+        model1.solnNumToSq(3).connect(model1.solnNumToSq(4));
+        Model model2 = new Model(model1);
+        assertTrue("copy should keep fixed numbers",
+                   model2.solnNumToSq(8).hasFixedNum());
+        assertEquals("copy should keep sequence numbers", 8,
+                     model2.solnNumToSq(8).sequenceNum());
+        assertEquals("copy should keep links", model2.solnNumToSq(4),
+                     model2.solnNumToSq(3).successor());
+        assertEquals("copy should keep unconnected count",
+                     model1.unconnected(), model2.unconnected());
+    }
+
+    @Test
+    public void stateTest() {
+        Model model1 = new Model(tr(SOLN1));
+        model1.solnNumToSq(5).connect(model1.solnNumToSq(6));
+        Model model2 = new Model(model1);
+        model2.solnNumToSq(6).connect(model2.solnNumToSq(7));
+        model2.solnNumToSq(11).connect(model2.solnNumToSq(12));
+        ByteBuffer buf = ByteBuffer.allocate(model1.stateSize()
+                                             + model2.stateSize());
+        model1.writeState(buf, null);
+        model2.writeState(buf, model1);
+        buf.flip();
+        Model copy1 = new Model(tr(SOLN1));
+        copy1.readState(buf);
+        assertEquals("full state", model1.toString(), copy1.toString());
+        assertEquals("full state", model1, copy1);
+        Model copy2 = new Model(copy1);
+        copy2.readState(buf);
+        assertEquals("delta state", model2.toString(), copy2.toString());
+        assertEquals("delta state", model2, copy2);
+        assertFalse("all state read", buf.hasRemaining());
+    }
+
     @Test
     public void solvedTest1() {
         Model model = new Model(tr(SOLN1));
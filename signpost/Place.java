@@ -32,22 +32,35 @@ class Place {
 
     /** Return the position (X, Y).  This is a factory method that
      *  creates a new Place only if needed by caching those that are
-     *  created. */
+     *  created.  It may be called from any thread. */
     static Place pl(int x, int y) {
         assert x >= 0 && y >= 0;
-        int s = max(x, y);
-        if (s >= _places.length) {
-            Place[][] newPlaces = new Place[s + 1][s + 1];
-            for (int i = 0; i < _places.length; i += 1) {
-                System.arraycopy(_places[i], 0, newPlaces[i], 0,
-                                 _places.length);
-            }
-            _places = newPlaces;
+        Place[][] places = _places;
+        if (x < places.length && y < places.length) {
+            return places[x][y];
         }
-        if (_places[x][y] == null) {
-            _places[x][y] = new Place(x, y);
+        return expand(max(x, y))[x][y];
+    }
+
+    /** Replace _places with a cache covering all positions with
+     *  coordinates up to at least S, returning it.  The new cache is
+     *  filled before it is published, so that readers need not lock. */
+    private static synchronized Place[][] expand(int s) {
+        Place[][] places = _places;
+        if (s < places.length) {
+            return places;
+        }
+        int n = max(s + 1, 2 * places.length);
+        Place[][] newPlaces = new Place[n][n];
+        for (int i = 0; i < n; i += 1) {
+            for (int j = 0; j < n; j += 1) {
+                newPlaces[i][j] =
+                    i < places.length && j < places.length ? places[i][j]
+                    : new Place(i, j);
+            }
         }
-        return _places[x][y];
+        _places = newPlaces;
+        return newPlaces;
     }
 
     /** Returns the direction from (X0, Y0) to (X1, Y1), if we are a queen
@@ -141,8 +154,9 @@ class Place {
     /** Coordinates of this Place. */
     protected final int x, y;
 
-    /** Places already generated. */
-    private static Place[][] _places = new Place[10][10];
+    /** Places already generated, indexed by x and y.  Never modified once
+     *  assigned here. */
+    private static volatile Place[][] _places = new Place[0][0];
 
 
 }
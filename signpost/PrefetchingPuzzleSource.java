@@ -0,0 +1,238 @@
+package signpost;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static signpost.Utils.*;
+
+/** A PuzzleSource that generates puzzles ahead of demand on a background
+ *  thread, so that requests for the current type of puzzle are normally
+ *  satisfied at once.  Up to a fixed number of puzzles of the most recently
+ *  requested type (width, height, and whether free ends are allowed) are
+ *  kept ready.  A request for a different type discards those.
+ *  <p>
+ *  The K-th puzzle delivered after seeding with S is generated by seeding
+ *  the underlying source with puzzleSeed(S, K), so that the sequence of
+ *  puzzles depends only on the seed and the sequence of requested types,
+ *  and not on how far prefetching happens to have progressed.
+ *  <p>
+ *  Puzzles are obtained from the underlying source with getPuzzleAsync,
+ *  so that generation of a puzzle that becomes stale may be cancelled.
+ *  @author Abel Feleke
+ */
+class PrefetchingPuzzleSource implements PuzzleSource {
+
+    /** Default number of puzzles to keep ready. */
+    static final int DEFAULT_CAPACITY = 2;
+
+    /** A PuzzleSource that takes its puzzles from SOURCE, keeping up to
+     *  CAPACITY of them ready in advance, and initially seeded with SEED.
+     *  After this call, SOURCE is used only by my prefetching thread. */
+    PrefetchingPuzzleSource(PuzzleSource source, long seed, int capacity) {
+        if (capacity < 1) {
+            throw badArgs("capacity must be positive");
+        }
+        _source = source;
+        _seed = seed;
+        _capacity = capacity;
+        _ready = new ArrayDeque<>(capacity);
+        Thread worker = new Thread(this::prefetch, "puzzle-prefetch");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public Model getPuzzle(int width, int height, boolean allowFreeEnds) {
+        try {
+            return getPuzzleAsync(width, height, allowFreeEnds, NO_DEADLINE)
+                .join();
+        } catch (CompletionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw excp;
+        }
+    }
+
+    @Override
+    public synchronized CompletableFuture<Model>
+        getPuzzleAsync(int width, int height, boolean allowFreeEnds,
+                       Duration deadline) {
+        if (!_typeSet || width != _width || height != _height
+            || allowFreeEnds != _allowFreeEnds) {
+            _width = width;
+            _height = height;
+            _allowFreeEnds = allowFreeEnds;
+            _typeSet = true;
+            discardReady();
+        }
+        CompletableFuture<Model> result = new CompletableFuture<>();
+        if (_ready.isEmpty()) {
+            _waiting.add(result);
+            result.orTimeout(nanos(deadline), TimeUnit.NANOSECONDS);
+        } else {
+            deliver(_ready.remove(), result);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        _seed = seed;
+        _served = 0;
+        discardReady();
+    }
+
+    /** Discard all ready puzzles, cancel any puzzle currently being
+     *  generated and any outstanding requests, and wake my prefetching
+     *  thread. */
+    private void discardReady() {
+        _ready.clear();
+        for (CompletableFuture<Model> request : _waiting) {
+            request.cancel(false);
+        }
+        _waiting.clear();
+        if (_inProgress != null) {
+            _inProgress.cancel(true);
+            _inProgress = null;
+        }
+        _epoch += 1;
+        notifyAll();
+    }
+
+    /** Complete REQUEST with the contents of SLOT, counting it as delivered.
+     *  Returns false (and does nothing) if REQUEST is already complete
+     *  (e.g., having timed out). */
+    private boolean deliver(Slot slot, CompletableFuture<Model> request) {
+        boolean delivered =
+            slot.failure == null ? request.complete(slot.puzzle)
+            : request.completeExceptionally(slot.failure);
+        if (delivered) {
+            _served += 1;
+            notifyAll();
+        }
+        return delivered;
+    }
+
+    /** Deliver SLOT to the oldest outstanding request, if any, or else
+     *  save it for later requests. */
+    private void supply(Slot slot) {
+        while (!_waiting.isEmpty()) {
+            if (deliver(slot, _waiting.remove())) {
+                return;
+            }
+        }
+        _ready.add(slot);
+    }
+
+    /** Body of the prefetching thread: repeatedly generate the next puzzle
+     *  not yet ready whenever there is room for it. */
+    private void prefetch() {
+        while (true) {
+            int width, height, epoch;
+            boolean allowFreeEnds;
+            long seed;
+            synchronized (this) {
+                while (!_typeSet || _ready.size() >= _capacity) {
+                    try {
+                        wait();
+                    } catch (InterruptedException excp) {
+                        return;
+                    }
+                }
+                width = _width;
+                height = _height;
+                allowFreeEnds = _allowFreeEnds;
+                epoch = _epoch;
+                seed = puzzleSeed(_seed, _served + _ready.size());
+            }
+
+            CompletableFuture<Model> puzzle;
+            try {
+                _source.setSeed(seed);
+                puzzle = _source.getPuzzleAsync(width, height, allowFreeEnds,
+                                                NO_DEADLINE);
+            } catch (RuntimeException excp) {
+                puzzle = CompletableFuture.failedFuture(excp);
+            }
+            synchronized (this) {
+                if (epoch != _epoch) {
+                    puzzle.cancel(true);
+                    continue;
+                }
+                _inProgress = puzzle;
+            }
+
+            Slot slot;
+            try {
+                slot = new Slot(puzzle.get(), null);
+            } catch (CancellationException excp) {
+                continue;
+            } catch (ExecutionException excp) {
+                slot = new Slot(null,
+                                excp.getCause() instanceof RuntimeException
+                                ? (RuntimeException) excp.getCause()
+                                : new IllegalStateException(excp.getCause()));
+            } catch (InterruptedException excp) {
+                return;
+            }
+
+            synchronized (this) {
+                if (epoch == _epoch) {
+                    _inProgress = null;
+                    supply(slot);
+                }
+            }
+        }
+    }
+
+    /** The result of one attempt to generate a puzzle. */
+    private static class Slot {
+        /** A Slot containing PUZZLE, or else the exception FAILURE that
+         *  resulted from trying to generate it. */
+        Slot(Model puzzle, RuntimeException failure) {
+            this.puzzle = puzzle;
+            this.failure = failure;
+        }
+
+        /** The generated puzzle, or null if generation failed. */
+        private final Model puzzle;
+        /** The exception thrown by a failed generation, or null. */
+        private final RuntimeException failure;
+    }
+
+    /** Outstanding requests for puzzles of the current type, in order of
+     *  arrival. */
+    private final ArrayDeque<CompletableFuture<Model>> _waiting =
+        new ArrayDeque<>();
+    /** The puzzle currently being generated for the current type, or
+     *  null if none. */
+    private CompletableFuture<Model> _inProgress;
+    /** Source of the puzzles I prefetch. */
+    private final PuzzleSource _source;
+    /** Maximum number of puzzles kept ready. */
+    private final int _capacity;
+    /** Puzzles (or failures) of the current type, in order of delivery.
+     *  These are the puzzles numbered _served, _served + 1, ... since
+     *  the last seeding. */
+    private final ArrayDeque<Slot> _ready;
+    /** Current random seed. */
+    private long _seed;
+    /** Number of puzzles delivered since last seeded. */
+    private long _served;
+    /** Incremented whenever the ready puzzles are discarded, so that a
+     *  puzzle being generated at the time may be recognized as stale. */
+    private int _epoch;
+    /** The type of puzzle most recently requested. */
+    private int _width, _height;
+    /** True iff the most recently requested type allows free ends. */
+    private boolean _allowFreeEnds;
+    /** True iff any puzzle has been requested (so that the current type
+     *  is known). */
+    private boolean _typeSet;
+}
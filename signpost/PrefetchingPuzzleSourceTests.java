@@ -0,0 +1,68 @@
+package signpost;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static signpost.Utils.*;
+
+/** Tests of the PrefetchingPuzzleSource class.
+ *  @author Abel Feleke
+ */
+public class PrefetchingPuzzleSourceTests {
+
+    /** Return the K-th puzzle of size WIDTH x HEIGHT after seeding with SEED,
+     *  as generated without prefetching. */
+    private Model expected(long seed, long k, int width, int height,
+                           boolean free) {
+        PuzzleGenerator puzzler = new PuzzleGenerator(0);
+        puzzler.setSeed(puzzleSeed(seed, k));
+        return puzzler.getPuzzleAsync(width, height, free,
+                                      PuzzleSource.NO_DEADLINE).join();
+    }
+
+    /** Check that ACTUAL has the same solution as EXPECTED. */
+    private void checkSame(String msg, Model expected, Model actual) {
+        assertTrue(msg, Arrays.deepEquals(expected.solution(),
+                                          actual.solution()));
+    }
+
+    @Test
+    public void sequenceTest() {
+        PrefetchingPuzzleSource source =
+            new PrefetchingPuzzleSource(new PuzzleGenerator(0), 42, 3);
+        checkSame("first puzzle", expected(42, 0, 5, 5, false),
+                  source.getPuzzle(5, 5, false));
+        checkSame("second puzzle", expected(42, 1, 5, 5, false),
+                  source.getPuzzle(5, 5, false));
+        checkSame("after type change", expected(42, 2, 4, 6, true),
+                  source.getPuzzle(4, 6, true));
+        checkSame("after second type change", expected(42, 3, 5, 5, false),
+                  source.getPuzzle(5, 5, false));
+    }
+
+    @Test
+    public void reseedTest() {
+        PrefetchingPuzzleSource source =
+            new PrefetchingPuzzleSource(new PuzzleGenerator(0), 1, 2);
+        Model first = source.getPuzzle(6, 6, false);
+        source.getPuzzle(6, 6, false);
+        source.setSeed(1);
+        checkSame("reseeded", first, source.getPuzzle(6, 6, false));
+        source.setSeed(271828);
+        checkSame("new seed", expected(271828, 0, 6, 6, false),
+                  source.getPuzzle(6, 6, false));
+    }
+
+    @Test
+    public void typeChangeCancelsTest() {
+        PrefetchingPuzzleSource source =
+            new PrefetchingPuzzleSource(new PuzzleGenerator(0), 7, 2);
+        source.getPuzzleAsync(60, 60, false, Duration.ofMillis(50));
+        checkSame("after abandoned request", expected(7, 0, 4, 4, false),
+                  source.getPuzzle(4, 4, false));
+    }
+
+}
@@ -0,0 +1,142 @@
+package signpost;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A bounded, least-recently-used cache of generated puzzles, keyed by the
+ *  seed from which each was generated, its dimensions, and whether it has
+ *  free ends.  Puzzles are held in the compact form of PuzzlePack records,
+ *  and the total size of those records is kept within a fixed number of
+ *  bytes.  A PuzzleCache may be shared among threads.
+ *  @author Abel Feleke
+ */
+class PuzzleCache {
+
+    /** Approximate number of bytes of overhead per cached entry, in
+     *  addition to the size of its record. */
+    static final int ENTRY_OVERHEAD = 96;
+
+    /** A cache holding at most about CAPACITY bytes of puzzles. */
+    PuzzleCache(long capacity) {
+        _capacity = capacity;
+    }
+
+    /** Return a new copy of the cached puzzle of size WIDTH x HEIGHT (with
+     *  free ends iff ALLOWFREEENDS) generated from SEED, or null if it is
+     *  not cached. */
+    Model get(long seed, int width, int height, boolean allowFreeEnds) {
+        byte[] rec;
+        synchronized (this) {
+            rec = _entries.get(new Key(seed, width, height, allowFreeEnds));
+        }
+        if (rec == null) {
+            _misses.increment();
+            return null;
+        }
+        _hits.increment();
+        return PuzzlePack.decode(rec, width, height);
+    }
+
+    /** Cache PUZZLE as the one generated from SEED with free ends iff
+     *  ALLOWFREEENDS, evicting the least recently used puzzles as needed to
+     *  stay within capacity. */
+    void put(long seed, Model puzzle, boolean allowFreeEnds) {
+        byte[] rec = PuzzlePack.encode(puzzle);
+        Key key = new Key(seed, puzzle.width(), puzzle.height(),
+                          allowFreeEnds);
+        synchronized (this) {
+            byte[] old = _entries.put(key, rec);
+            if (old != null) {
+                _size -= old.length + ENTRY_OVERHEAD;
+            }
+            _size += rec.length + ENTRY_OVERHEAD;
+            Iterator<byte[]> lru = _entries.values().iterator();
+            while (_size > _capacity && lru.hasNext()) {
+                _size -= lru.next().length + ENTRY_OVERHEAD;
+                lru.remove();
+                _evictions.increment();
+            }
+        }
+    }
+
+    /** Return the number of lookups that found a puzzle. */
+    long hits() {
+        return _hits.sum();
+    }
+
+    /** Return the number of lookups that did not find a puzzle. */
+    long misses() {
+        return _misses.sum();
+    }
+
+    /** Return the number of puzzles evicted to stay within capacity. */
+    long evictions() {
+        return _evictions.sum();
+    }
+
+    /** Return the number of puzzles currently cached. */
+    synchronized int size() {
+        return _entries.size();
+    }
+
+    /** Return the approximate number of bytes currently used. */
+    synchronized long bytes() {
+        return _size;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PuzzleCache[%d puzzles, %d bytes, %d hits,"
+                             + " %d misses, %d evictions]",
+                             size(), bytes(), hits(), misses(), evictions());
+    }
+
+    /** Identifies a cached puzzle. */
+    private static class Key {
+        /** The key for a WIDTH x HEIGHT puzzle generated from SEED, with free
+         *  ends iff FREE. */
+        Key(long seed, int width, int height, boolean free) {
+            _seed = seed;
+            _width = width;
+            _height = height;
+            _free = free;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return _seed == other._seed && _width == other._width
+                && _height == other._height && _free == other._free;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(_seed, _width, _height, _free);
+        }
+
+        /** Seed from which the puzzle was generated. */
+        private final long _seed;
+        /** Dimensions of the puzzle. */
+        private final int _width, _height;
+        /** True iff the puzzle has free ends. */
+        private final boolean _free;
+    }
+
+    /** Maximum total size of cached entries, in bytes. */
+    private final long _capacity;
+    /** Current total size of cached entries, in bytes. */
+    private long _size;
+    /** Cached records, in order from least to most recently used. */
+    private final LinkedHashMap<Key, byte[]> _entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** Counts of lookups that succeeded and that failed. */
+    private final LongAdder _hits = new LongAdder(),
+        _misses = new LongAdder();
+    /** Count of entries evicted. */
+    private final LongAdder _evictions = new LongAdder();
+}
@@ -0,0 +1,77 @@
+package signpost;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the PuzzleCache and CachingPuzzleSource classes.
+ *  @author Abel Feleke
+ */
+public class PuzzleCacheTests {
+
+    @Test
+    public void hitMissTest() {
+        PuzzleCache cache = new PuzzleCache(1 << 20);
+        Model puzzle = new PuzzleGenerator(3).getPuzzle(5, 5, false);
+        assertNull("Empty cache hit", cache.get(3, 5, 5, false));
+        cache.put(3, puzzle, false);
+        Model copy = cache.get(3, 5, 5, false);
+        assertNotNull("Cached puzzle missing", copy);
+        assertTrue("Wrong cached puzzle",
+                   Arrays.deepEquals(puzzle.solution(), copy.solution()));
+        assertNull("Wrong type hit", cache.get(3, 5, 5, true));
+        assertEquals("Wrong hit count", 1, cache.hits());
+        assertEquals("Wrong miss count", 2, cache.misses());
+    }
+
+    @Test
+    public void evictionTest() {
+        int entry = PuzzlePack.recordSize(4, 4) + PuzzleCache.ENTRY_OVERHEAD;
+        PuzzleCache cache = new PuzzleCache(3 * entry);
+        PuzzleGenerator puzzler = new PuzzleGenerator(4);
+        for (int k = 0; k < 3; k += 1) {
+            cache.put(k, puzzler.getPuzzle(4, 4, false), false);
+        }
+        cache.get(0, 4, 4, false);
+        cache.put(3, puzzler.getPuzzle(4, 4, false), false);
+        assertEquals("Wrong cache size", 3, cache.size());
+        assertTrue("Size limit exceeded", cache.bytes() <= 3 * entry);
+        assertNotNull("Recently used puzzle evicted",
+                      cache.get(0, 4, 4, false));
+        assertNull("Least recently used puzzle kept",
+                   cache.get(1, 4, 4, false));
+    }
+
+    @Test
+    public void replayTest() {
+        PuzzleCache cache = new PuzzleCache(1 << 20);
+        CachingPuzzleSource source1 =
+            new CachingPuzzleSource(new PuzzleGenerator(0), cache, 99),
+            source2 =
+            new CachingPuzzleSource(new PuzzleGenerator(0), cache, 5);
+        Model first = source1.getPuzzle(6, 6, false);
+        source1.getPuzzle(6, 6, false);
+        source2.setSeed(99);
+        Model replayed = source2.getPuzzle(6, 6, false);
+        assertTrue("Replayed puzzle differs",
+                   Arrays.deepEquals(first.solution(), replayed.solution()));
+        assertEquals("Replay not served from cache", 1, cache.hits());
+    }
+
+    @Test
+    public void reproducibleTest() {
+        PuzzleCache cache = new PuzzleCache(1 << 20);
+        PuzzleGenerator generator = new PuzzleGenerator(0);
+        CachingPuzzleSource source =
+            new CachingPuzzleSource(generator, cache, 7);
+        source.getPuzzleAsync(5, 5, false, Duration.ofSeconds(30)).join();
+        assertEquals("Complete puzzle not cached", 1, cache.size());
+        generator.setClueBudget(Duration.ofMillis(10));
+        source.getPuzzle(5, 5, false);
+        source.getPuzzleAsync(5, 5, false, Duration.ofSeconds(30)).join();
+        assertEquals("Budgeted puzzles cached", 1, cache.size());
+    }
+
+}
@@ -1,7 +1,17 @@
 package signpost;
 
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 import signpost.Model.Sq;
 
@@ -21,15 +31,157 @@ class PuzzleGenerator implements PuzzleSource {
         _random = new Random(seed);
     }
 
+    /** {@inheritDoc}  Unneeded fixed numbers are removed by trimFixed, or
+     *  if I have a clue budget (see setClueBudget), by a ClueMinimizer.
+     *  The time taken and the work done are recorded in
+     *  GenerationStats.GLOBAL, including those of a puzzle abandoned
+     *  because it was cancelled or missed its deadline. */
     @Override
     public Model getPuzzle(int width, int height, boolean allowFreeEnds) {
-        Model model =
-            new Model(makePuzzleSolution(width, height, allowFreeEnds));
-        makeSolutionUnique(model);
+        long start = System.nanoTime();
+        _counts.clear();
+        _truncated = false;
+        Model model;
+        try {
+            model =
+                new Model(makePuzzleSolution(width, height, allowFreeEnds));
+            if (_clueBudget.isZero()) {
+                makeSolutionUnique(model);
+            } else {
+                model = minimizeClues(model);
+            }
+        } catch (CancellationException excp) {
+            GenerationStats.GLOBAL.recordAbandoned
+                (width, height, allowFreeEnds, System.nanoTime() - start,
+                 _counts);
+            throw excp;
+        }
         model.autoconnect();
+        for (Sq sq : model) {
+            if (sq.hasFixedNum()) {
+                _counts.clues += 1;
+            }
+        }
+        GenerationStats.GLOBAL.record(width, height, allowFreeEnds,
+                                      System.nanoTime() - start, _counts);
         return model;
     }
 
+    /** {@inheritDoc}  My puzzles are not reproducible if I have a clue
+     *  budget (see setClueBudget), since the numbers removed depend on the
+     *  time taken. */
+    @Override
+    public Model getPuzzle(int width, int height, boolean allowFreeEnds,
+                           Consumer<Model> keep) {
+        Model puzzle = getPuzzle(width, height, allowFreeEnds);
+        if (reproducible()) {
+            keep.accept(puzzle);
+        }
+        return puzzle;
+    }
+
+    /** Return true iff the last puzzle I generated depends only on the
+     *  state of my random-number generator before it was generated: that
+     *  is, iff I have no clue budget and the deadline did not cut short
+     *  the removal of its unneeded fixed numbers. */
+    private boolean reproducible() {
+        return _clueBudget.isZero() && !_truncated;
+    }
+
+    /** Return the work done for the last puzzle I generated, or for the
+     *  one I am generating. */
+    GenerationStats.Counts counts() {
+        return _counts;
+    }
+
+    /** {@inheritDoc}  The puzzle is generated on a shared pool of threads
+     *  by a new generator seeded from my random-number generator, so that
+     *  the puzzles produced depend only on my seed and the sequence of
+     *  requests.  Generation stops as soon as possible once the result is
+     *  cancelled.  If DEADLINE passes before a solution and a set of fixed
+     *  numbers that make it unique have been found, the result completes
+     *  exceptionally with a TimeoutException.  If it passes while unneeded
+     *  fixed numbers are being removed, the result is the (valid) puzzle
+     *  with the numbers removed so far.  As a backstop against a worker
+     *  that fails to notice its deadline, the result also times out on
+     *  its own shortly after it, and any exception or error that ends the
+     *  worker completes the result exceptionally, so that the result
+     *  always completes. */
+    @Override
+    public CompletableFuture<Model> getPuzzleAsync(int width, int height,
+                                                   boolean allowFreeEnds,
+                                                   Duration deadline) {
+        return getPuzzleAsync(width, height, allowFreeEnds, deadline,
+                              (puzzle) -> { });
+    }
+
+    /** {@inheritDoc}  My puzzles are not reproducible if I have a clue
+     *  budget (see setClueBudget), nor if DEADLINE passes while unneeded
+     *  fixed numbers are being removed.  The puzzle is passed to KEEP
+     *  before the result completes. */
+    @Override
+    public CompletableFuture<Model> getPuzzleAsync(int width, int height,
+                                                   boolean allowFreeEnds,
+                                                   Duration deadline,
+                                                   Consumer<Model> keep) {
+        PuzzleGenerator worker = new PuzzleGenerator(_random.nextLong());
+        worker._deadline = System.nanoTime() + nanos(deadline);
+        worker._timed = true;
+        worker._clueBudget = _clueBudget;
+        CompletableFuture<Model> result = new CompletableFuture<>();
+        result.orTimeout(nanos(deadline) + nanos(DEADLINE_GRACE),
+                         TimeUnit.NANOSECONDS);
+        result.whenComplete((puzzle, excp) -> worker.cancel());
+        GENERATORS.execute(() -> {
+            try {
+                result.complete(worker.getPuzzle(width, height,
+                                                 allowFreeEnds, keep));
+            } catch (CancellationException excp) {
+                if (worker.pastDeadline()) {
+                    result.completeExceptionally
+                        (new TimeoutException(msg("no %dx%d puzzle found"
+                                                  + " within %s",
+                                                  width, height, deadline)));
+                }
+            } catch (Throwable excp) {
+                result.completeExceptionally(excp);
+            }
+        });
+        return result;
+    }
+
+    /** Abandon my current puzzle. */
+    private void cancel() {
+        _cancelled = true;
+        ClueMinimizer minimizer = _minimizer;
+        if (minimizer != null) {
+            minimizer.stop();
+        }
+    }
+
+    /** Spend up to BUDGET on removing fixed numbers from each puzzle that
+     *  getPuzzle generates, using a ClueMinimizer, rather than removing
+     *  them once with trimFixed.  This usually yields puzzles with fewer
+     *  fixed numbers.  A zero BUDGET restores the use of trimFixed. */
+    void setClueBudget(Duration budget) {
+        _clueBudget = budget;
+    }
+
+    /** Throw CancellationException if my current puzzle is no longer
+     *  wanted, either because it has been cancelled or because its deadline
+     *  has passed. */
+    private void checkContinue() {
+        if (_cancelled || pastDeadline()) {
+            throw new CancellationException();
+        }
+    }
+
+    /** Return true iff I am generating a puzzle with a deadline and the
+     *  deadline has passed. */
+    private boolean pastDeadline() {
+        return _timed && System.nanoTime() - _deadline > 0;
+    }
+
     /** Return an array representing a WIDTH x HEIGHT Signpost puzzle.
      *  The first array index indicates x-coordinates (column numbers) on
      *  the board, and the second index represents y-coordinates (row numbers).
@@ -37,8 +189,8 @@ class PuzzleGenerator implements PuzzleSource {
      *  appearing in a sequence queen moves on the resulting board.
      *  Unless ALLOWFREEENDS, the first and last sequence numbers will
      *  appear in the upper-left and lower-right corners, respectively. */
-    private int[][] makePuzzleSolution(int width, int height,
-                                       boolean allowFreeEnds) {
+    int[][] makePuzzleSolution(int width, int height,
+                               boolean allowFreeEnds) {
         _vals = new int[width][height];
         _successorCells = Place.successorCells(width, height);
         int last = width * height;
@@ -54,11 +206,53 @@ class PuzzleGenerator implements PuzzleSource {
         }
         _vals[x0][y0] = 1;
         _vals[x1][y1] = last;
-        boolean ok = findSolutionPathFrom(x0, y0);
+        _steps = PATH_STEP_LIMIT * last;
+        _freeMoves = null;
+        boolean ok;
+        try {
+            ok = findSolutionPathFrom(x0, y0);
+        } catch (PathLimitException excp) {
+            for (int[] col : _vals) {
+                Arrays.fill(col, 0);
+            }
+            _vals[x0][y0] = 1;
+            _vals[x1][y1] = last;
+            _steps = Long.MAX_VALUE;
+            initFreeMoves();
+            ok = findSolutionPathFrom(x0, y0);
+        }
         assert ok;
         return _vals;
     }
 
+    /** Initialize _freeMoves from _vals and _successorCells, so as to order
+     *  the search for a path by the number of onward moves. */
+    private void initFreeMoves() {
+        int w = _vals.length, h = _vals[0].length;
+        _freeMoves = new int[w][h];
+        for (int x = 0; x < w; x += 1) {
+            for (int y = 0; y < h; y += 1) {
+                if (_vals[x][y] == 0) {
+                    for (Place p : _successorCells[x][y][0]) {
+                        _freeMoves[p.x][p.y] += 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Set _vals at P to V, where either _vals at P or V is 0, updating
+     *  _freeMoves if it is in use. */
+    private void setVal(Place p, int v) {
+        _vals[p.x][p.y] = v;
+        if (_freeMoves != null) {
+            int delta = v == 0 ? 1 : -1;
+            for (Place q : _successorCells[p.x][p.y][0]) {
+                _freeMoves[q.x][q.y] += delta;
+            }
+        }
+    }
+
     /** Try to find a random path of queen moves through VALS from (X0, Y0)
      *  to the cell with number LAST.  Assumes that
      *    + The dimensions of VALS conforms to those of MODEL;
@@ -68,22 +262,36 @@ class PuzzleGenerator implements PuzzleSource {
      *    + All other cells in VALS contain 0.
      *  Does not change the contents of any non-zero cell in VALS.
      *  Returns true and leaves the path that is found in VALS.  Otherwise
-     *  returns false and leaves VALS unchanged. Does not change MODEL. */
+     *  returns false and leaves VALS unchanged. Does not change MODEL.
+     *  Moves to each square are tried in random order, unless _freeMoves
+     *  is non-null, in which case squares with fewer onward moves are tried
+     *  first.  Throws PathLimitException if the search takes more than
+     *  _steps steps in total. */
     private boolean findSolutionPathFrom(int x0, int y0) {
         int w = _vals.length, h = _vals[0].length;
         int v;
         int start = _vals[x0][y0] + 1;
         PlaceList moves = _successorCells[x0][y0][0];
+        checkContinue();
+        _steps -= 1;
+        if (_steps < 0) {
+            throw new PathLimitException();
+        }
         Collections.shuffle(moves, _random);
+        if (_freeMoves != null) {
+            moves = new PlaceList(moves);
+            moves.sort(Comparator.comparingInt(p -> _freeMoves[p.x][p.y]));
+        }
         for (Place p : moves) {
             v = _vals[p.x][p.y];
             if (v == 0) {
-                _vals[p.x][p.y] = start;
+                setVal(p, start);
                 if (findSolutionPathFrom(p.x, p.y)) {
                     return true;
 
                 }
-                _vals[p.x][p.y] = 0;
+                setVal(p, 0);
+                _counts.backtracks += 1;
             } else if (v == start && start == w * h) {
                 return true;
             }
@@ -95,13 +303,28 @@ class PuzzleGenerator implements PuzzleSource {
      *  a single possible successor or predecessor). Return true iff any change
      *  was made. */
     static boolean extendSimple(Model model) {
-        boolean found;
-        found = false;
+        return extendSimpleSweeps(model) > 1;
+    }
+
+    /** Extend unambiguous paths in MODEL as for extendSimple, returning the
+     *  number of sweeps over MODEL for forced connections that were made
+     *  (the last of which found none). */
+    static int extendSimpleSweeps(Model model) {
+        int sweeps;
+        sweeps = 1;
         while (makeForwardConnections(model)
                || makeBackwardConnections(model)) {
-            found = true;
+            sweeps += 1;
         }
-        return found;
+        return sweeps;
+    }
+
+    /** Extend unambiguous paths in MODEL as for extendSimple, counting the
+     *  sweeps made.  Return true iff any change was made. */
+    private boolean extend(Model model) {
+        int sweeps = extendSimpleSweeps(model);
+        _counts.sweeps += sweeps;
+        return sweeps > 1;
     }
 
     /** Make all unique forward connections in MODEL (those in which there is
@@ -208,19 +431,28 @@ class PuzzleGenerator implements PuzzleSource {
 
     /** Remove all links in MODEL and unfix numbers (other than the first and
      *  last) that do not affect solvability.  Not all such numbers are
-     *  necessarily removed. */
-    private void trimFixed(Model model) {
+     *  necessarily removed, and if the deadline for the current puzzle
+     *  passes, no more are. */
+    void trimFixed(Model model) {
         int w = model.width(), h = model.height();
         boolean changed;
         do {
             changed = false;
+            _counts.passes += 1;
             for (Sq sq : model) {
+                if (_cancelled) {
+                    throw new CancellationException();
+                } else if (pastDeadline()) {
+                    _truncated = true;
+                    return;
+                }
                 if (sq.hasFixedNum() && sq.sequenceNum() != 1
                     && sq.direction() != 0) {
                     model.restart();
+                    _counts.restarts += 1;
                     int n = sq.sequenceNum();
                     sq.unfixNum();
-                    extendSimple(model);
+                    extend(model);
                     if (model.solved()) {
                         changed = true;
                     } else {
@@ -234,16 +466,25 @@ class PuzzleGenerator implements PuzzleSource {
     /** Fix additional numbers in MODEL to make the solution from which
      *  it was formed unique.  Need not result in a minimal set of
      *  fixed numbers. */
-    private void makeSolutionUnique(Model model) {
+    void makeSolutionUnique(Model model) {
+        addFixed(model);
+        trimFixed(model);
+        model.restart();
+    }
+
+    /** Fix additional numbers in MODEL until extendSimple can find the
+     *  solution from which it was formed, leaving MODEL in its solved
+     *  state. */
+    void addFixed(Model model) {
         model.restart();
         AddNum:
         while (true) {
-            extendSimple(model);
+            checkContinue();
+            extend(model);
             if (model.solved()) {
-                trimFixed(model);
-                model.restart();
                 return;
             }
+            _counts.iterations += 1;
             PlaceList unnumbered = new PlaceList();
             for (Sq sq : model) {
                 if (sq.sequenceNum() == 0) {
@@ -252,9 +493,11 @@ class PuzzleGenerator implements PuzzleSource {
             }
             Collections.shuffle(unnumbered, _random);
             for (Place p : unnumbered) {
+                checkContinue();
                 Model model1 = new Model(model);
                 model1.get(p).setFixedNum(model.solution()[p.x][p.y]);
-                if (extendSimple(model1)) {
+                _counts.trials += 1;
+                if (extend(model1)) {
                     model.get(p).setFixedNum(model1.get(p).sequenceNum());
                     continue AddNum;
                 }
@@ -263,17 +506,135 @@ class PuzzleGenerator implements PuzzleSource {
         }
     }
 
+    /** Return a ClueMinimizer for a new WIDTH x HEIGHT puzzle (with free
+     *  ends iff ALLOWFREEENDS).  This returns as soon as a puzzle with a
+     *  unique solution has been found, without first removing unneeded fixed
+     *  numbers.  The minimizer then removes fixed numbers on the shared
+     *  generator threads for at most BUDGET. */
+    ClueMinimizer getPuzzleAnytime(int width, int height,
+                                   boolean allowFreeEnds, Duration budget) {
+        ClueMinimizer result =
+            minimizer(new Model(makePuzzleSolution(width, height,
+                                                   allowFreeEnds)),
+                      budget);
+        GENERATORS.execute(result::run);
+        return result;
+    }
+
+    /** Fix numbers in MODEL until its solution is unique, and return a
+     *  ClueMinimizer for the resulting puzzle with time budget BUDGET. */
+    private ClueMinimizer minimizer(Model model, Duration budget) {
+        addFixed(model);
+        model.restart();
+        return new ClueMinimizer(model, _random.nextLong(), budget);
+    }
+
+    /** Return a puzzle with the solution of MODEL whose fixed numbers make
+     *  that solution unique, after spending up to my clue budget in this
+     *  thread on removing as many of them as possible.  If my current
+     *  puzzle has a deadline, the removal stops when it passes. */
+    private Model minimizeClues(Model model) {
+        Duration budget = _clueBudget;
+        if (_timed) {
+            long left = Math.max(0, _deadline - System.nanoTime());
+            budget = Duration.ofNanos(Math.min(nanos(budget), left));
+        }
+        ClueMinimizer minimizer = minimizer(model, budget);
+        _minimizer = minimizer;
+        try {
+            if (_cancelled) {
+                throw new CancellationException();
+            }
+            minimizer.run();
+            if (_cancelled) {
+                throw new CancellationException();
+            }
+            return minimizer.result().join();
+        } finally {
+            _minimizer = null;
+        }
+    }
+
+    /** Return a WIDTH x HEIGHT puzzle (with free ends iff ALLOWFREEENDS),
+     *  spending up to about BUDGET beyond the time needed to find a puzzle
+     *  with a unique solution in removing as many fixed numbers as
+     *  possible. */
+    Model getPuzzle(int width, int height, boolean allowFreeEnds,
+                    Duration budget) {
+        return getPuzzleAnytime(width, height, allowFreeEnds, budget)
+            .result().join();
+    }
+
     @Override
     public void setSeed(long seed) {
         _random.setSeed(seed);
     }
 
+    /** Thrown when findSolutionPathFrom exceeds its step limit. */
+    private static class PathLimitException extends RuntimeException {
+        /** Serialization version. */
+        private static final long serialVersionUID = 1L;
+    }
+
+    /** Time after the deadline of an asynchronous puzzle at which its
+     *  result times out even if its worker has not stopped. */
+    private static final Duration DEADLINE_GRACE = Duration.ofMillis(100);
+
+    /** Number of threads used for asynchronous puzzle generation. */
+    private static final int GENERATOR_THREADS =
+        Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    /** Stack size (bytes) of threads used for asynchronous puzzle
+     *  generation.  The path search recurses once per square. */
+    private static final long GENERATOR_STACK_SIZE = 64L << 20;
+
+    /** Number of steps per square allowed to the randomly ordered path
+     *  search before falling back to a search ordered by onward moves. */
+    private static final long PATH_STEP_LIMIT = 64;
+
+    /** Shared threads for asynchronous puzzle generation. */
+    static final ExecutorService GENERATORS =
+        Executors.newFixedThreadPool(GENERATOR_THREADS, (r) -> {
+            Thread t = new Thread(null, r, "puzzle-generator",
+                                  GENERATOR_STACK_SIZE);
+            t.setDaemon(true);
+            return t;
+        });
+
+    /** Work done for my current puzzle. */
+    private final GenerationStats.Counts _counts =
+        new GenerationStats.Counts();
+
     /** Solution board currently being filled in by findSolutionPathFrom. */
     private int[][] _vals;
     /** Mapping of positions and directions to lists of queen moves on _vals. */
     private PlaceList[][][] _successorCells;
 
+    /** Number of squares onto which path search may move from each square,
+     *  or null if unused. */
+    private int[][] _freeMoves;
+    /** Number of steps remaining to the current path search. */
+    private long _steps;
+
     /** My PNRG. */
     private Random _random;
 
+    /** True iff the puzzle I am generating has been cancelled. */
+    private volatile boolean _cancelled;
+    /** Time to spend minimizing the fixed numbers of each puzzle, or zero
+     *  to use trimFixed. */
+    private Duration _clueBudget = Duration.ZERO;
+    /** Removes fixed numbers from the puzzle I am generating, or null. */
+    private volatile ClueMinimizer _minimizer;
+
+    /** True iff the deadline cut short the removal of unneeded fixed
+     *  numbers from the puzzle I am generating. */
+    private boolean _truncated;
+
+    /** True iff the puzzle I am generating has a deadline. */
+    private boolean _timed;
+    /** Deadline for the puzzle I am generating, as a System.nanoTime()
+     *  value, if _timed. */
+    private long _deadline;
+
 }
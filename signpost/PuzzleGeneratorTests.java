@@ -1,15 +1,23 @@
 package signpost;
 
 import static java.util.Arrays.asList;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.junit.Test;
 
 import static org.junit.Assert.*;
 
+import signpost.Model.Sq;
+
 import static signpost.Utils.tr;
 import static signpost.Utils.setUp;
 import static signpost.PuzzleGenerator.*;
 import static signpost.ModelTests.checkNumbers;
+import static signpost.PuzzleSource.NO_DEADLINE;
 
 /**
  * Tests of the Model class.
@@ -77,6 +85,95 @@ public class PuzzleGeneratorTests {
         checkPuzzle(model.solution(), 1, 3, false);
     }
 
+    @Test
+    public void asyncPuzzleTest() throws Exception {
+        PuzzleGenerator puzzler = new PuzzleGenerator(314159);
+        Model model = puzzler.getPuzzleAsync(6, 6, false, NO_DEADLINE)
+            .get(30, TimeUnit.SECONDS);
+        checkPuzzle(model.solution(), 6, 6, false);
+    }
+
+    @Test
+    public void deadlineTest() throws Exception {
+        PuzzleGenerator puzzler = new PuzzleGenerator(314159);
+        CompletableFuture<Model> result =
+            puzzler.getPuzzleAsync(80, 80, false, Duration.ofMillis(20));
+        try {
+            result.get(30, TimeUnit.SECONDS);
+            fail("80x80 puzzle generated within 20 milliseconds");
+        } catch (ExecutionException excp) {
+            assertTrue("Wrong exception for missed deadline",
+                       excp.getCause() instanceof TimeoutException);
+        }
+    }
+
+    @Test
+    public void deadlineBoundTest() throws Exception {
+        PuzzleGenerator puzzler = new PuzzleGenerator(271828);
+        long start = System.nanoTime();
+        CompletableFuture<Model> result =
+            puzzler.getPuzzleAsync(40, 40, true, Duration.ofMillis(50));
+        try {
+            result.get(30, TimeUnit.SECONDS);
+            fail("40x40 puzzle generated within 50 milliseconds");
+        } catch (ExecutionException excp) {
+            assertTrue("Wrong exception for missed deadline",
+                       excp.getCause() instanceof TimeoutException);
+        }
+        assertTrue("Deadline overrun",
+                   System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+    }
+
+    /** Check that MODEL is solved by extendSimple from its fixed numbers
+     *  alone.  Restarts MODEL. */
+    private void checkSolvable(Model model) {
+        model.restart();
+        extendSimple(model);
+        assertTrue("Puzzle not uniquely solvable", model.solved());
+    }
+
+    @Test
+    public void anytimeTest() throws Exception {
+        PuzzleGenerator puzzler = new PuzzleGenerator(271828),
+            twin = new PuzzleGenerator(271828);
+        Model initial = new Model(twin.makePuzzleSolution(7, 7, false));
+        twin.addFixed(initial);
+        ClueMinimizer minimizer =
+            puzzler.getPuzzleAnytime(7, 7, false, Duration.ofSeconds(5));
+        Model first = minimizer.best();
+        checkPuzzle(first.solution(), 7, 7, false);
+        checkSolvable(first);
+        assertTrue("Clues added", clues(first) <= clues(initial));
+        Model last = minimizer.result().get(30, TimeUnit.SECONDS);
+        assertEquals("Wrong clue count", clues(last), minimizer.clues());
+        assertTrue("No clues removed", clues(last) < clues(initial));
+        checkSolvable(last);
+    }
+
+    @Test
+    public void clueBudgetTest() throws Exception {
+        PuzzleGenerator puzzler = new PuzzleGenerator(161803);
+        puzzler.setClueBudget(Duration.ofMillis(200));
+        Model puzzle = puzzler.getPuzzle(6, 6, true);
+        checkPuzzle(puzzle.solution(), 6, 6, true);
+        checkSolvable(puzzle);
+        puzzle = puzzler.getPuzzleAsync(5, 6, false, Duration.ofSeconds(5))
+            .get(30, TimeUnit.SECONDS);
+        checkPuzzle(puzzle.solution(), 5, 6, false);
+        checkSolvable(puzzle);
+    }
+
+    /** Return the number of fixed numbers in MODEL. */
+    private int clues(Model model) {
+        int n = 0;
+        for (Sq sq : model) {
+            if (sq.hasFixedNum()) {
+                n += 1;
+            }
+        }
+        return n;
+    }
+
     @Test
     public void uniqueSuccessorTest() {
         Model M = setUp(tr(SOLN1), SOLN1_NUMBERS, CONNECT1);
@@ -0,0 +1,270 @@
+package signpost;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import signpost.Model.Sq;
+
+import static java.nio.file.StandardOpenOption.*;
+import static signpost.Utils.*;
+
+/** The binary format of puzzle packs: files containing many puzzles, each
+ *  of which can be located directly from a fixed-width index.  A pack
+ *  consists of
+ *  <ul>
+ *  <li> A header of HEADER_SIZE bytes: the int MAGIC, the format VERSION,
+ *       the number of puzzles, and an unused int.
+ *  <li> An index of INDEX_ENTRY_SIZE bytes per puzzle, sorted by width,
+ *       height, and free-ends flag (so that all puzzles of one type are
+ *       contiguous), each containing the puzzle's width and height (shorts),
+ *       flags (a byte: FREE_ENDS if the puzzle has free ends), three unused
+ *       bytes, the seed from which the puzzle was generated (a long), the
+ *       offset in the file of the puzzle's record (a long), and eight
+ *       unused bytes.
+ *  <li> The puzzle records.  A record for a puzzle of N squares is the
+ *       solution, as N cell numbers (x * height + y) of the squares
+ *       containing 1, 2, ..., N, each a short if N <= 65536 and an int
+ *       otherwise, followed by a bit set of the fixed numbers: (N + 7) / 8
+ *       bytes in which bit (k - 1) % 8 of byte (k - 1) / 8 is set iff
+ *       number k is fixed.
+ *  </ul>
+ *  All numbers are big-endian.  The main program writes packs of
+ *  generated puzzles.
+ *  @author Abel Feleke
+ */
+class PuzzlePack {
+
+    /** First four bytes of a pack ("SPPK"). */
+    static final int MAGIC = 0x5350504b;
+    /** Current format version. */
+    static final int VERSION = 1;
+    /** Size in bytes of the header. */
+    static final int HEADER_SIZE = 16;
+    /** Size in bytes of an index entry. */
+    static final int INDEX_ENTRY_SIZE = 32;
+    /** Flag bit indicating a puzzle with free ends. */
+    static final int FREE_ENDS = 1;
+    /** Largest width or height that fits in an index entry. */
+    static final int MAX_SIDE = 0xffff;
+
+    /** Return the size in bytes of the record of a WIDTH x HEIGHT
+     *  puzzle. */
+    static int recordSize(int width, int height) {
+        int n = width * height;
+        return n * (n <= (1 << 16) ? 2 : 4) + (n + 7) / 8;
+    }
+
+    /** Write the record for PUZZLE into OUT at its current position. */
+    static void encode(Model puzzle, ByteBuffer out) {
+        int n = puzzle.size(), h = puzzle.height();
+        boolean wide = n > (1 << 16);
+        for (int k = 1; k <= n; k += 1) {
+            Place p = puzzle.solnNumToPlace(k);
+            int cell = p.x * h + p.y;
+            if (wide) {
+                out.putInt(cell);
+            } else {
+                out.putShort((short) cell);
+            }
+        }
+        byte[] fixed = new byte[(n + 7) / 8];
+        int[][] soln = puzzle.solution();
+        for (Sq sq : puzzle) {
+            if (sq.hasFixedNum()) {
+                int k = soln[sq.x][sq.y] - 1;
+                fixed[k / 8] |= 1 << (k % 8);
+            }
+        }
+        out.put(fixed);
+    }
+
+    /** Return the record for PUZZLE as a new array. */
+    static byte[] encode(Model puzzle) {
+        byte[] result = new byte[recordSize(puzzle.width(), puzzle.height())];
+        encode(puzzle, ByteBuffer.wrap(result));
+        return result;
+    }
+
+    /** Return the WIDTH x HEIGHT puzzle whose record starts at the current
+     *  position of IN, advancing past it.  The fixed numbers in the result
+     *  that are in sequence are connected. */
+    static Model decode(ByteBuffer in, int width, int height) {
+        int n = width * height;
+        boolean wide = n > (1 << 16);
+        int[][] soln = new int[width][height];
+        for (int k = 1; k <= n; k += 1) {
+            int cell = wide ? in.getInt() : in.getShort() & 0xffff;
+            if (cell >= n || soln[cell / height][cell % height] != 0) {
+                throw badArgs("malformed puzzle record");
+            }
+            soln[cell / height][cell % height] = k;
+        }
+        Model result = new Model(soln);
+        for (int i = 0; i < (n + 7) / 8; i += 1) {
+            int bits = in.get() & 0xff;
+            for (int b = 0; bits != 0; b += 1, bits >>>= 1) {
+                if ((bits & 1) != 0) {
+                    result.solnNumToSq(8 * i + b + 1)
+                        .setFixedNum(8 * i + b + 1);
+                }
+            }
+        }
+        result.autoconnect();
+        return result;
+    }
+
+    /** Return the puzzle whose record is REC, of size WIDTH x HEIGHT. */
+    static Model decode(byte[] rec, int width, int height) {
+        return decode(ByteBuffer.wrap(rec), width, height);
+    }
+
+    /** Accumulates puzzles to be written as a pack. */
+    static class Writer {
+
+        /** Add PUZZLE, which was generated from SEED with free ends iff
+         *  FREEENDS, to the pack. */
+        void add(Model puzzle, boolean freeEnds, long seed) {
+            _entries.add(new Entry(puzzle.width(), puzzle.height(),
+                                   freeEnds ? FREE_ENDS : 0, seed,
+                                   encode(puzzle)));
+        }
+
+        /** Write all puzzles added so far to the file FILE as a pack,
+         *  replacing any previous contents. */
+        void write(Path file) throws IOException {
+            ArrayList<Entry> entries = new ArrayList<>(_entries);
+            entries.sort(Comparator.comparingInt((Entry e) -> e.width)
+                         .thenComparingInt(e -> e.height)
+                         .thenComparingInt(e -> e.flags));
+            try (FileChannel out = FileChannel.open(file, CREATE, WRITE,
+                                                    TRUNCATE_EXISTING)) {
+                ByteBuffer index =
+                    ByteBuffer.allocate(HEADER_SIZE
+                                        + INDEX_ENTRY_SIZE * entries.size());
+                index.putInt(MAGIC).putInt(VERSION).putInt(entries.size())
+                    .putInt(0);
+                long offset = index.capacity();
+                for (Entry e : entries) {
+                    index.putShort((short) e.width).putShort((short) e.height)
+                        .put((byte) e.flags).put(new byte[3])
+                        .putLong(e.seed).putLong(offset).putLong(0);
+                    offset += e.record.length;
+                }
+                index.flip();
+                while (index.hasRemaining()) {
+                    out.write(index);
+                }
+                for (Entry e : entries) {
+                    ByteBuffer rec = ByteBuffer.wrap(e.record);
+                    while (rec.hasRemaining()) {
+                        out.write(rec);
+                    }
+                }
+            }
+        }
+
+        /** Puzzles added so far. */
+        private final ArrayList<Entry> _entries = new ArrayList<>();
+    }
+
+    /** A puzzle to be written to a pack. */
+    private static class Entry {
+        /** An entry for a WIDTH x HEIGHT puzzle with index flags FLAGS,
+         *  generated from SEED, whose record is RECORD. */
+        Entry(int width, int height, int flags, long seed, byte[] record) {
+            this.width = width;
+            this.height = height;
+            this.flags = flags;
+            this.seed = seed;
+            this.record = record;
+        }
+
+        /** Dimensions of the puzzle. */
+        private final int width, height;
+        /** Index flags. */
+        private final int flags;
+        /** Seed from which the puzzle was generated. */
+        private final long seed;
+        /** Encoded puzzle. */
+        private final byte[] record;
+    }
+
+    /** A type of puzzle named on a command line. */
+    static class Type {
+        /** The type denoted by ARG, which has the form WxH or WxHF (for
+         *  free ends), in either case.  Throws IllegalArgumentException if
+         *  ARG is malformed or does not describe a board of at least two
+         *  squares that fits in a pack's index. */
+        Type(String arg) {
+            Matcher m = TYPE_ARG.matcher(arg);
+            if (!m.matches()) {
+                throw badArgs("bad puzzle type: %s", arg);
+            }
+            width = toInt(m.group(1));
+            height = toInt(m.group(2));
+            freeEnds = !m.group(3).isEmpty();
+            if (width < 1 || height < 1 || width > MAX_SIDE
+                || height > MAX_SIDE || (long) width * height < 2) {
+                throw badArgs("bad puzzle size: %s", arg);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%dx%d%s", width, height,
+                                 freeEnds ? "F" : "");
+        }
+
+        /** Dimensions of the puzzles. */
+        final int width, height;
+        /** True iff the puzzles have free ends. */
+        final boolean freeEnds;
+    }
+
+    /** Write a pack of generated puzzles.  ARGS are FILE SEED COUNT TYPE...,
+     *  where each TYPE has the form WxH or WxHF (for free ends).  The pack
+     *  FILE receives COUNT puzzles of each TYPE, the K-th of which is
+     *  generated from puzzleSeed(SEED, K). */
+    public static void main(String... args) throws IOException {
+        long seed = 0;
+        int count = 0;
+        ArrayList<Type> types = new ArrayList<>();
+        try {
+            if (args.length < 4) {
+                throw badArgs("too few arguments");
+            }
+            seed = toLong(args[1]);
+            count = toInt(args[2]);
+            for (int i = 3; i < args.length; i += 1) {
+                types.add(new Type(args[i]));
+            }
+        } catch (IllegalArgumentException excp) {
+            System.err.println("Usage: java signpost.PuzzlePack FILE SEED"
+                               + " COUNT WxH[F]...");
+            System.exit(1);
+        }
+        Writer pack = new Writer();
+        PuzzleGenerator puzzler = new PuzzleGenerator(seed);
+        for (Type type : types) {
+            for (int k = 0; k < count; k += 1) {
+                long s = puzzleSeed(seed, k);
+                puzzler.setSeed(s);
+                pack.add(puzzler.getPuzzle(type.width, type.height,
+                                           type.freeEnds),
+                         type.freeEnds, s);
+            }
+        }
+        pack.write(Paths.get(args[0]));
+    }
+    /** Form of a puzzle type argument. */
+    private static final Pattern TYPE_ARG =
+        Pattern.compile("(\\d{1,5})x(\\d{1,5})(f?)",
+                        Pattern.CASE_INSENSITIVE);
+}
@@ -0,0 +1,152 @@
+package signpost;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.HashMap;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+import static signpost.PuzzlePack.*;
+
+/** A PuzzleSource that supplies puzzles from a puzzle pack (see
+ *  PuzzlePack).  The index of the pack is memory-mapped when the source is
+ *  opened, and each puzzle's record is mapped only when it is requested.
+ *  After seeding with S, the K-th request for a given type of puzzle yields
+ *  the puzzle of that type numbered (S + K) mod C, where C is the number of
+ *  puzzles of that type in the pack.  The pack stays open until the
+ *  source is closed.
+ *  @author Abel Feleke
+ */
+class PuzzlePackSource implements PuzzleSource, AutoCloseable {
+
+    /** A source of the puzzles in the pack FILE, initially seeded with
+     *  SEED. */
+    PuzzlePackSource(Path file, long seed) throws IOException {
+        _file = FileChannel.open(file, READ);
+        ByteBuffer header = _file.map(READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            _file.close();
+            throw new IOException("not a puzzle pack: " + file);
+        }
+        _count = header.getInt();
+        _index = _file.map(READ_ONLY, HEADER_SIZE,
+                           (long) INDEX_ENTRY_SIZE * _count);
+        _seed = seed;
+    }
+
+    /** Return the number of puzzles in the pack. */
+    int count() {
+        return _count;
+    }
+
+    /** Return the number of WIDTH x HEIGHT puzzles (with free ends iff
+     *  ALLOWFREEENDS) in the pack. */
+    int count(int width, int height, boolean allowFreeEnds) {
+        int flags = allowFreeEnds ? FREE_ENDS : 0;
+        return firstEntry(width, height, flags + 1)
+            - firstEntry(width, height, flags);
+    }
+
+    /** Return the K-th WIDTH x HEIGHT puzzle (with free ends iff
+     *  ALLOWFREEENDS) in the pack, numbering from 0. */
+    Model getPuzzle(int width, int height, boolean allowFreeEnds, int k) {
+        long offset =
+            _index.getLong(entry(width, height, allowFreeEnds, k) + 16);
+        try {
+            return decode(_file.map(READ_ONLY, offset,
+                                    recordSize(width, height)),
+                          width, height);
+        } catch (IOException excp) {
+            throw new UncheckedIOException(excp);
+        }
+    }
+
+    /** Return the seed from which the K-th WIDTH x HEIGHT puzzle (with free
+     *  ends iff ALLOWFREEENDS) was generated. */
+    long seedOf(int width, int height, boolean allowFreeEnds, int k) {
+        return _index.getLong(entry(width, height, allowFreeEnds, k) + 8);
+    }
+
+    @Override
+    public synchronized Model getPuzzle(int width, int height,
+                                        boolean allowFreeEnds) {
+        int count = count(width, height, allowFreeEnds);
+        if (count == 0) {
+            throw new IllegalStateException
+                (String.format("no puzzles of type %dx%d%s in pack",
+                               width, height, allowFreeEnds ? " FREE" : ""));
+        }
+        long type = typeKey(width, height, allowFreeEnds ? FREE_ENDS : 0);
+        long k = _served.merge(type, 1L, Long::sum) - 1;
+        return getPuzzle(width, height, allowFreeEnds,
+                         (int) Math.floorMod(_seed + k, (long) count));
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        _seed = seed;
+        _served.clear();
+    }
+
+    /** Close the pack. */
+    @Override
+    public void close() throws IOException {
+        _file.close();
+    }
+
+    /** Return the position in the index of the entry for the K-th WIDTH x
+     *  HEIGHT puzzle (with free ends iff ALLOWFREEENDS), numbering from 0.
+     *  Throws IllegalStateException if there is no such puzzle. */
+    private int entry(int width, int height, boolean allowFreeEnds, int k) {
+        int flags = allowFreeEnds ? FREE_ENDS : 0;
+        int first = firstEntry(width, height, flags);
+        if (k < 0 || first + k >= firstEntry(width, height, flags + 1)) {
+            throw new IllegalStateException
+                (String.format("no puzzle #%d of type %dx%d%s in pack", k,
+                               width, height, allowFreeEnds ? " FREE" : ""));
+        }
+        return (first + k) * INDEX_ENTRY_SIZE;
+    }
+
+    /** Return the index of the first entry whose type is not less than
+     *  WIDTH x HEIGHT with flags FLAGS. */
+    private int firstEntry(int width, int height, int flags) {
+        long key = typeKey(width, height, flags);
+        int lo = 0, hi = _count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int e = mid * INDEX_ENTRY_SIZE;
+            long midKey = typeKey(_index.getShort(e) & 0xffff,
+                                  _index.getShort(e + 2) & 0xffff,
+                                  _index.get(e + 4) & 0xff);
+            if (midKey < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Return a key for the type WIDTH x HEIGHT with flags FLAGS that
+     *  orders types as in the index. */
+    private static long typeKey(int width, int height, int flags) {
+        return ((long) width << 40) | ((long) height << 16) | flags;
+    }
+
+    /** The pack file. */
+    private final FileChannel _file;
+    /** The memory-mapped index. */
+    private final MappedByteBuffer _index;
+    /** Number of puzzles in the pack. */
+    private final int _count;
+    /** Current seed. */
+    private long _seed;
+    /** Number of puzzles of each type (by typeKey) supplied since last
+     *  seeded. */
+    private final HashMap<Long, Long> _served = new HashMap<>();
+}
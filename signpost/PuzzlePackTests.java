@@ -0,0 +1,117 @@
+package signpost;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import signpost.Model.Sq;
+
+/** Tests of the PuzzlePack and PuzzlePackSource classes.
+ *  @author Abel Feleke
+ */
+public class PuzzlePackTests {
+
+    /** Check that ACTUAL has the same solution and fixed numbers as
+     *  EXPECTED. */
+    private void checkSame(String msg, Model expected, Model actual) {
+        assertTrue(msg + ": solutions differ",
+                   Arrays.deepEquals(expected.solution(), actual.solution()));
+        for (Sq sq : expected) {
+            assertEquals(msg + ": fixed numbers differ", sq.hasFixedNum(),
+                         actual.get(sq.x, sq.y).hasFixedNum());
+        }
+    }
+
+    @Test
+    public void recordTest() {
+        Model puzzle = new PuzzleGenerator(1).getPuzzle(5, 6, true);
+        byte[] rec = PuzzlePack.encode(puzzle);
+        assertEquals("Wrong record size", PuzzlePack.recordSize(5, 6),
+                     rec.length);
+        checkSame("decoded record", puzzle, PuzzlePack.decode(rec, 5, 6));
+    }
+
+    @Test
+    public void packTest() throws IOException {
+        PuzzleGenerator puzzler = new PuzzleGenerator(2);
+        PuzzlePack.Writer writer = new PuzzlePack.Writer();
+        ArrayList<Model> small = new ArrayList<>(),
+            large = new ArrayList<>();
+        for (int k = 0; k < 3; k += 1) {
+            large.add(puzzler.getPuzzle(6, 5, false));
+            writer.add(large.get(k), false, 100 + k);
+            small.add(puzzler.getPuzzle(4, 4, false));
+            writer.add(small.get(k), false, 200 + k);
+        }
+        Model free = puzzler.getPuzzle(4, 4, true);
+        writer.add(free, true, 300);
+        Path file = Files.createTempFile("signpost", ".pack");
+        try {
+            writer.write(file);
+            checkPack(file, large, small, free);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /** Check that the pack FILE contains the 6x5 puzzles LARGE, the 4x4
+     *  puzzles SMALL, and the 4x4 free-ends puzzle FREE, with the seeds
+     *  given them by packTest. */
+    private void checkPack(Path file, ArrayList<Model> large,
+                           ArrayList<Model> small, Model free)
+        throws IOException {
+        try (PuzzlePackSource source = new PuzzlePackSource(file, 0)) {
+            assertEquals("Wrong pack size", 7, source.count());
+            assertEquals("Wrong type count", 3, source.count(6, 5, false));
+            assertEquals("Wrong type count", 0, source.count(6, 5, true));
+            assertEquals("Wrong type count", 1, source.count(4, 4, true));
+            checkSame("free-ends puzzle", free,
+                      source.getPuzzle(4, 4, true, 0));
+            assertEquals("Wrong seed", 300, source.seedOf(4, 4, true, 0));
+            for (int k = 0; k < 3; k += 1) {
+                checkSame("6x5 puzzle", large.get(k),
+                          source.getPuzzle(6, 5, false, k));
+                checkSame("4x4 puzzle", small.get(k),
+                          source.getPuzzle(4, 4, false, k));
+                assertEquals("Wrong seed", 100 + k,
+                             source.seedOf(6, 5, false, k));
+            }
+            source.setSeed(4);
+            checkSame("seeded", small.get(1), source.getPuzzle(4, 4, false));
+            checkSame("seeded", small.get(2), source.getPuzzle(4, 4, false));
+            checkSame("seeded", large.get(1), source.getPuzzle(6, 5, false));
+            try {
+                source.seedOf(6, 5, false, 3);
+                fail("seedOf accepted a missing puzzle");
+            } catch (IllegalStateException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    @Test
+    public void typeTest() {
+        PuzzlePack.Type type = new PuzzlePack.Type("12x7f");
+        assertEquals("Wrong width", 12, type.width);
+        assertEquals("Wrong height", 7, type.height);
+        assertTrue("Free ends not recognized", type.freeEnds);
+        assertEquals("Wrong name", "12x7F", type.toString());
+        assertFalse("Free ends not recognized",
+                    new PuzzlePack.Type("4X4").freeEnds);
+        for (String bad : new String[] { "4", "4x", "x4", "4x4g", "1x1",
+                                         "0x5", "99999x2", "4x4ff" }) {
+            try {
+                new PuzzlePack.Type(bad);
+                fail("accepted bad type " + bad);
+            } catch (IllegalArgumentException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+}
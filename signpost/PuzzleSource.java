@@ -1,15 +1,60 @@
 package signpost;
 
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
 /** Describes a source of Signpost puzzles.
  *  @author P. N. Hilfinger
  */
 interface PuzzleSource {
 
+    /** A deadline for getPuzzleAsync that never passes. */
+    Duration NO_DEADLINE = Duration.ofSeconds(Long.MAX_VALUE);
+
     /** Returns a WIDTH x HEIGHT Model containing a puzzle. Unless
      *  ALLOWFREEENDS, the upper-left square will be numbered 1 and the
      *  lower-right will be numbered with the number of cells in the model. */
     Model getPuzzle(int width, int height, boolean allowFreeEnds);
 
+    /** Returns a future whose value is a puzzle as for getPuzzle(WIDTH,
+     *  HEIGHT, ALLOWFREEENDS).  If no puzzle is available within DEADLINE,
+     *  the future may complete exceptionally with a TimeoutException.
+     *  Cancelling the future abandons the request.  By default, calls
+     *  getPuzzle immediately, ignoring DEADLINE. */
+    default CompletableFuture<Model> getPuzzleAsync(int width, int height,
+                                                    boolean allowFreeEnds,
+                                                    Duration deadline) {
+        return CompletableFuture.completedFuture(getPuzzle(width, height,
+                                                           allowFreeEnds));
+    }
+
+    /** As for getPuzzle(WIDTH, HEIGHT, ALLOWFREEENDS), but also passes the
+     *  puzzle to KEEP if it is reproducible: that is, if it depends only
+     *  on my seed and the sequence of requests, and not on the time
+     *  allowed or taken to produce it.  By default, every puzzle is
+     *  reproducible. */
+    default Model getPuzzle(int width, int height, boolean allowFreeEnds,
+                            Consumer<Model> keep) {
+        Model puzzle = getPuzzle(width, height, allowFreeEnds);
+        keep.accept(puzzle);
+        return puzzle;
+    }
+
+    /** As for getPuzzleAsync(WIDTH, HEIGHT, ALLOWFREEENDS, DEADLINE), but
+     *  also passes the puzzle to KEEP when the result completes, if it is
+     *  reproducible (see getPuzzle(WIDTH, HEIGHT, ALLOWFREEENDS, KEEP)).
+     *  By default, every puzzle is reproducible. */
+    default CompletableFuture<Model> getPuzzleAsync(int width, int height,
+                                                    boolean allowFreeEnds,
+                                                    Duration deadline,
+                                                    Consumer<Model> keep) {
+        CompletableFuture<Model> result =
+            getPuzzleAsync(width, height, allowFreeEnds, deadline);
+        result.thenAccept(keep);
+        return result;
+    }
+
     /** Reseed the random number generator with SEED. */
     void setSeed(long seed);
 
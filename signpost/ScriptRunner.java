@@ -0,0 +1,320 @@
+package signpost;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Runs integration-test scripts (the testing/*.in files) within a single
+ *  JVM, each in its own Controller with a TestSource as input and its
+ *  output captured, several at a time on a pool of threads.  Each
+ *  script's standard output is compared with its .std file using the
+ *  rules of compare_loose in testing/tester.py, and the script fails if it
+ *  writes any error output or ends in an internal error.
+ *  @author Abel Feleke
+ */
+class ScriptRunner {
+
+    /** The outcome of running one script. */
+    static class Result {
+        /** The outcome of the script SCRIPT, which took NANOS nanoseconds,
+         *  and which failed for REASON, or passed if REASON is null. */
+        Result(Path script, long nanos, String reason) {
+            _script = script;
+            _nanos = nanos;
+            _reason = reason;
+        }
+
+        /** Return true iff the script passed. */
+        boolean passed() {
+            return _reason == null;
+        }
+
+        /** Return the reason the script failed, or null if it passed. */
+        String reason() {
+            return _reason;
+        }
+
+        /** Return the time taken by the script in nanoseconds. */
+        long nanos() {
+            return _nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %s (%.1f ms)", _script.getFileName(),
+                                 passed() ? "OK" : "FAILED: " + _reason,
+                                 _nanos / 1e6);
+        }
+
+        /** The script. */
+        private final Path _script;
+        /** Elapsed time. */
+        private final long _nanos;
+        /** Reason for failure, or null. */
+        private final String _reason;
+    }
+
+    /** Return the result of running SCRIPT and comparing its output with
+     *  that in STANDARD (ignored if null). */
+    static Result run(Path script, Path standard) {
+        long start = System.nanoTime();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(),
+            err = new ByteArrayOutputStream();
+        String reason;
+        try (PrintStream outs = new PrintStream(out, false, "UTF-8");
+             PrintStream errs = new PrintStream(err, false, "UTF-8")) {
+            TestSource src = new TestSource(script);
+            Controller puzzler =
+                new Controller(null, src, src, false, true, outs, errs);
+            while (puzzler.solving()) {
+                puzzler.solvePuzzle();
+            }
+            outs.flush();
+            errs.flush();
+            reason = null;
+            if (standard != null) {
+                reason =
+                    compareLoose(filter(out.toString("UTF-8")),
+                                 filter(new String(Files.readAllBytes(standard),
+                                                   StandardCharsets.UTF_8)));
+            }
+            if (reason == null && err.size() > 0) {
+                reason = "Error output is not empty.";
+            }
+        } catch (IllegalStateException excp) {
+            reason = String.format("Internal error: %s", excp.getMessage());
+        } catch (IOException | RuntimeException excp) {
+            reason = String.format("Program exited abnormally: %s", excp);
+        }
+        return new Result(script, System.nanoTime() - start, reason);
+    }
+
+    /** Return TEXT with comments removed, as for output_filter in
+     *  testing/tester.py. */
+    static String filter(String text) {
+        return text.replaceAll("#.*\\r?\\n", "");
+    }
+
+    /** Return null if the output RECEIVED matches the pattern EXPECTED, and
+     *  otherwise a reason why not.  Boards in EXPECTED that start with
+     *  "B[" must appear verbatim.  In those starting with "*B[", only the
+     *  size, the non-blank numbers, and the position of the last square are
+     *  checked.  Those starting with "**B[" also require the received board
+     *  to be a correctly solved puzzle.  This is compare_loose from
+     *  testing/tester.py. */
+    static String compareLoose(String received, String expected) {
+        ArrayList<String> actualBoards = boards(ACTUAL_BOARD, received),
+            expectedBoards = boards(EXPECTED_BOARD, expected);
+        if (actualBoards.size() != expectedBoards.size()) {
+            return String.format("There are %d output boards; expected %d.",
+                                 actualBoards.size(), expectedBoards.size());
+        }
+        for (int cnt = 1; cnt <= actualBoards.size(); cnt += 1) {
+            String reason = compareBoard(cnt, actualBoards.get(cnt - 1),
+                                         expectedBoards.get(cnt - 1));
+            if (reason != null) {
+                return reason;
+            }
+        }
+        return null;
+    }
+
+    /** Return all matches of BOARD in TEXT. */
+    private static ArrayList<String> boards(Pattern board, String text) {
+        ArrayList<String> result = new ArrayList<>();
+        Matcher mat = board.matcher(text);
+        while (mat.find()) {
+            result.add(mat.group());
+        }
+        return result;
+    }
+
+    /** Return null if output board #CNT, ACTUALBOARD, matches the pattern
+     *  STDBOARD, and otherwise a reason why not. */
+    private static String compareBoard(int cnt, String actualBoard,
+                                       String stdBoard) {
+        if (stdBoard.charAt(0) != '*') {
+            return actualBoard.equals(stdBoard) ? null
+                : String.format("Output board #%d does not match standard.",
+                                cnt);
+        }
+        String[] actual = actualBoard.split("\\r?\\n", -1),
+            std = stdBoard.split("\\r?\\n", -1);
+        if (actual.length != std.length) {
+            return String.format("Height of output board #%d does not match"
+                                 + " standard.", cnt);
+        }
+        int n = std.length - 1;
+        if (!actual[0].replaceAll(".*B\\[", "")
+            .equals(std[0].replaceAll(".*B\\[", ""))) {
+            return String.format("Board #%d header should read %s.", cnt,
+                                 std[0].replaceAll(".*B\\[", "B["));
+        }
+        for (int i = 2; i < n; i += 3) {
+            String s1 = std[i], s2 = std[i + 1],
+                a1 = actual[i], a2 = actual[i + 1];
+            for (int j = 1; j < s1.length(); j += 7) {
+                String sNum = slice(s1, j, j + 6),
+                    aNum = slice(a1, j, j + 6);
+                if (!sNum.equals("      ") && !sNum.equals(aNum)) {
+                    return String.format("Number discrepency on board #%d:"
+                                         + " %s should be %s.", cnt,
+                                         aNum.trim(), sNum.trim());
+                }
+                if (slice(s2, 3, 5).equals(" *")
+                    != slice(a2, 3, 5).equals(" *")) {
+                    return String.format("Wrong target square on board #%d.",
+                                         cnt);
+                }
+            }
+        }
+        if (std[0].startsWith("**")) {
+            if (UNCONNECTED.matcher(actualBoard).find()) {
+                return String.format("Board #%d has unconnected squares.",
+                                     cnt);
+            }
+            String[][] dirs;
+            int[][] nums;
+            try {
+                int w = (actual[1].length() - 1) / 7, h = (n - 1) / 3;
+                dirs = new String[w][h];
+                nums = new int[w][h];
+                for (int x = 0; x < w; x += 1) {
+                    for (int y = 0; y < h; y += 1) {
+                        dirs[x][y] = slice(actual[n - 1 - 3 * y],
+                                           4 + 7 * x, 6 + 7 * x);
+                        nums[x][y] =
+                            Integer.parseInt(slice(actual[n - 2 - 3 * y],
+                                                   1 + 7 * x, 6 + 7 * x)
+                                             .trim());
+                    }
+                }
+            } catch (RuntimeException excp) {
+                return String.format("Unknown format error on board #%d.",
+                                     cnt);
+            }
+            if (!goodSolution(dirs, nums)) {
+                return String.format("Board #%d has an invalid solution.",
+                                     cnt);
+            }
+        }
+        return null;
+    }
+
+    /** Return S[START:END] with the clamping of Python slices. */
+    private static String slice(String s, int start, int end) {
+        return s.substring(Math.min(start, s.length()),
+                           Math.min(end, s.length()));
+    }
+
+    /** Return true iff NUMS (indexed by x and y) contains each of
+     *  1 .. (number of squares) once, and each square but the last has the
+     *  direction in DIRS of its successor. */
+    private static boolean goodSolution(String[][] dirs, int[][] nums) {
+        int w = nums.length, h = nums[0].length, size = w * h;
+        int[] where = new int[size + 1];
+        for (int x = 0; x < w; x += 1) {
+            for (int y = 0; y < h; y += 1) {
+                int k = nums[x][y];
+                if (k < 1 || k > size || where[k] != 0) {
+                    return false;
+                }
+                where[k] = x * h + y + 1;
+            }
+        }
+        for (int k = 1; k < size; k += 1) {
+            int x0 = (where[k] - 1) / h, y0 = (where[k] - 1) % h,
+                x1 = (where[k + 1] - 1) / h, y1 = (where[k + 1] - 1) % h;
+            if (!dirName(x0, y0, x1, y1).equals(dirs[x0][y0])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the two-character name of the direction from (X0, Y0) to
+     *  (X1, Y1), as printed on boards, or "??" if there is none. */
+    private static String dirName(int x0, int y0, int x1, int y1) {
+        if (x0 == x1) {
+            return y1 > y0 ? "N " : "S ";
+        } else if (y0 == y1) {
+            return x1 > x0 ? "E " : "W ";
+        } else if (x0 + y0 == x1 + y1) {
+            return y1 > y0 ? "NW" : "SE";
+        } else if (x0 - y0 == x1 - y1) {
+            return y1 > y0 ? "NE" : "SW";
+        } else {
+            return "??";
+        }
+    }
+
+    /** Run the scripts in ARGS ([ --threads=N ] FILE.in...), comparing
+     *  each FILE.in's output with FILE.std, if present.  Reports the result
+     *  and time of each script, and exits with status 0 iff all pass. */
+    public static void main(String... args) throws InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ArrayList<Path> scripts = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring(10));
+            } else {
+                scripts.add(Paths.get(arg));
+            }
+        }
+        if (scripts.isEmpty() || threads < 1) {
+            System.err.println("Usage: java signpost.ScriptRunner"
+                               + " [--threads=N] TEST.in...");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayList<Future<Result>> results = new ArrayList<>();
+        for (Path script : scripts) {
+            String name = script.getFileName().toString()
+                .replaceFirst("\\.in$", "") + ".std";
+            Path std = script.resolveSibling(name);
+            results.add(pool.submit(() -> run(script,
+                                              Files.exists(std) ? std
+                                              : null)));
+        }
+        pool.shutdown();
+
+        int passed;
+        passed = 0;
+        for (Future<Result> result : results) {
+            try {
+                Result r = result.get();
+                System.out.println(r);
+                if (r.passed()) {
+                    passed += 1;
+                }
+            } catch (ExecutionException excp) {
+                System.out.printf("FAILED: %s%n", excp.getCause());
+            }
+        }
+        System.out.printf("Passed %d out of %d tests in %.1f ms.%n", passed,
+                          scripts.size(), (System.nanoTime() - start) / 1e6);
+        System.exit(passed == scripts.size() ? 0 : 1);
+    }
+
+    /** Matches an output board. */
+    private static final Pattern ACTUAL_BOARD =
+        Pattern.compile("(?ms)^B\\[.*?\\]");
+    /** Matches a board in a .std file. */
+    private static final Pattern EXPECTED_BOARD =
+        Pattern.compile("(?ms)^\\*?\\*?B\\[.*?\\]");
+    /** Matches any indication of an unconnected square. */
+    private static final Pattern UNCONNECTED = Pattern.compile("[.o]");
+}
@@ -0,0 +1,46 @@
+package signpost;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the output comparisons of ScriptRunner.
+ *  @author Abel Feleke
+ */
+public class ScriptRunnerTests {
+
+    /** A solved 3x3 board. */
+    private static final String SOLVED =
+        "B[ 3x3 (SOLVED)\n"
+        + "+------+------+------+\n"
+        + "|1     |2     |3     |\n"
+        + "|   E  |   E  |   S  |\n"
+        + "+------+------+------+\n"
+        + "|6     |5     |4     |\n"
+        + "|   S  |   W  |   W  |\n"
+        + "+------+------+------+\n"
+        + "|7     |8     |9     |\n"
+        + "|   E  |   E  |   *  |\n"
+        + "+------+------+------+]\n";
+
+    @Test
+    public void exactTest() {
+        assertNull(ScriptRunner.compareLoose("x\n" + SOLVED, SOLVED));
+        assertNotNull(ScriptRunner.compareLoose(SOLVED.replace("7 ", "0 "),
+                                                SOLVED));
+        assertNotNull(ScriptRunner.compareLoose(SOLVED + SOLVED, SOLVED));
+    }
+
+    @Test
+    public void looseTest() {
+        String pattern = "*" + SOLVED.replace("2     |3", "      |3");
+        assertNull(ScriptRunner.compareLoose(SOLVED, pattern));
+        assertNotNull(ScriptRunner.compareLoose(SOLVED.replace("|3  ",
+                                                               "|2  "),
+                                                pattern));
+        assertNull(ScriptRunner.compareLoose(SOLVED, "*" + pattern));
+        assertNotNull(ScriptRunner.compareLoose(SOLVED.replace("|   S  |   W",
+                                                               "|   SW |   W"),
+                                                "*" + pattern));
+    }
+
+}
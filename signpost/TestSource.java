@@ -1,28 +1,59 @@
 package signpost;
 
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.NoSuchElementException;
 
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
 import static signpost.Utils.*;
 
-/** A type of InputSource that receives commands from a Scanner. This kind
- *  of source is intended for testing.
+/** A type of InputSource that receives commands and puzzles from a byte
+ *  stream. This kind of source is intended for testing.  Input is parsed
+ *  directly from bytes; tokens are separated by whitespace, parentheses,
+ *  and commas.
  *  @author P. N. Hilfinger
  */
 class TestSource implements CommandSource, PuzzleSource {
 
-    /** Provides commands and puzzles from SOURCE.  */
-    TestSource(Scanner source) {
-        source.useDelimiter("[ \t\n\r(,)]+");
-        _source = source;
+    /** Initial size of the input buffer used for channels. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Provides commands and puzzles from SOURCE, which is read only as
+     *  needed. */
+    TestSource(ReadableByteChannel source) {
+        this(source, BUFFER_SIZE);
+    }
+
+    /** Provides commands and puzzles from SOURCE, which is read only as
+     *  needed into a buffer of initially SIZE bytes. */
+    TestSource(ReadableByteChannel source, int size) {
+        _in = source;
+        _buf = ByteBuffer.allocate(size);
+        _buf.limit(0);
+    }
+
+    /** Provides commands and puzzles from the contents of FILE, which is
+     *  memory-mapped. */
+    TestSource(Path file) throws IOException {
+        try (FileChannel chan = FileChannel.open(file, READ)) {
+            _buf = chan.map(READ_ONLY, 0, chan.size());
+        }
+        _in = null;
+        _eof = true;
     }
 
     /** Returns a command string read from my source. At EOF, returns QUIT.
      *  Allows comment lines starting with "#", which are discarded. */
     @Override
     public String getCommand() {
-        while (_source.hasNext()) {
-            String line = _source.nextLine().trim().toUpperCase();
+        while (tokenStart() >= 0) {
+            String line = nextLine().trim().toUpperCase();
             if (!line.startsWith("#")) {
                 return line;
             }
@@ -30,6 +61,20 @@ class TestSource implements CommandSource, PuzzleSource {
         return "QUIT";
     }
 
+    @Override
+    public Command getCommand(Command cmnd) {
+        while (tokenStart() >= 0) {
+            int end = lineEnd();
+            cmnd.decode(_buf, _buf.position(), _buf.position() + end);
+            advance(end);
+            skipLineTerminator();
+            if (!cmnd.comment()) {
+                return cmnd;
+            }
+        }
+        return cmnd.decode("QUIT");
+    }
+
     /** Initialize MODEL to a puzzle.  Throws IllegalStateException if there is
      *  no valid puzzle available, or if ALLOWFREEENDS is false and the
      *  puzzle does not have the default starting and ending squares in the
@@ -37,25 +82,30 @@ class TestSource implements CommandSource, PuzzleSource {
     @Override
     public Model getPuzzle(int width, int height, boolean allowFreeEnds) {
         try {
-            while (_source.hasNext(".*#.*")) {
-                _source.next();
-                _source.nextLine();
+            while (nextTokenHasComment()) {
+                skipToken();
+                nextLine();
             }
 
-            if (_source.hasNext("AUTOPUZZLE")) {
-                _source.next();
+            if (nextTokenIs("AUTOPUZZLE")) {
+                skipToken();
                 return _randomPuzzler.getPuzzle(width, height, allowFreeEnds);
             }
 
-            _source.next("PUZZLE");
-            int w = _source.nextInt(), h = _source.nextInt();
+            expect("PUZZLE");
+            int w = nextInt(), h = nextInt();
             if (w != width || h != height) {
                 throw badArgs("wrong puzzle size");
             }
             int[][] soln = new int[w][h];
+            int[] cellOf = new int[w * h + 1];
             for (int y = h - 1; y >= 0; y -= 1) {
                 for (int x = 0; x < w; x += 1) {
-                    soln[x][y] = _source.nextInt();
+                    int n = nextInt();
+                    soln[x][y] = n;
+                    if (n > 0 && n <= w * h) {
+                        cellOf[n] = x * h + y + 1;
+                    }
                 }
             }
             if (!allowFreeEnds) {
@@ -65,17 +115,14 @@ class TestSource implements CommandSource, PuzzleSource {
             }
             Model model = new Model(soln);
             model.restart();
-            while (_source.hasNextInt()) {
-                int n = _source.nextInt();
-                for (int x = 0; x < w; x += 1) {
-                    for (int y = 0; y < h; y += 1) {
-                        if (soln[x][y] == n) {
-                            model.get(x, y).setFixedNum(n);
-                        }
-                    }
+            while (nextTokenIsInt()) {
+                int n = nextInt();
+                if (n > 0 && n <= w * h && cellOf[n] != 0) {
+                    int c = cellOf[n] - 1;
+                    model.get(c / h, c % h).setFixedNum(n);
                 }
             }
-            _source.next("ENDPUZZLE");
+            expect("ENDPUZZLE");
             return model;
         } catch (NoSuchElementException excp) {
             throw new IllegalStateException("missing or malformed puzzle");
@@ -87,8 +134,211 @@ class TestSource implements CommandSource, PuzzleSource {
         _randomPuzzler.setSeed(seed);
     }
 
-    /** Input source. */
-    private Scanner _source;
+    /** Return true iff C is a token delimiter. */
+    private static boolean isDelimiter(int c) {
+        switch (c) {
+        case ' ': case '\t': case '\n': case '\r':
+        case '(': case ',': case ')':
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /** Return the byte K positions past the current input position, or -1
+     *  if the input ends before that. */
+    private int peek(int k) {
+        int p = _buf.position() + k;
+        while (p >= _buf.limit()) {
+            if (!fill()) {
+                return -1;
+            }
+            p = _buf.position() + k;
+        }
+        return _buf.get(p) & 0xff;
+    }
+
+    /** Read more input into _buf, preserving all unconsumed bytes.
+     *  Returns false if there is no more input. */
+    private boolean fill() {
+        if (_eof) {
+            return false;
+        }
+        _buf.compact();
+        if (!_buf.hasRemaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(2 * _buf.capacity());
+            _buf.flip();
+            larger.put(_buf);
+            _buf = larger;
+        }
+        try {
+            int n = _in.read(_buf);
+            if (n < 0) {
+                _eof = true;
+            }
+        } catch (IOException excp) {
+            throw new UncheckedIOException(excp);
+        } finally {
+            _buf.flip();
+        }
+        return true;
+    }
+
+    /** Return the offset from the current position of the start of the
+     *  next token, or -1 if there is none. */
+    private int tokenStart() {
+        int k;
+        for (k = 0; isDelimiter(peek(k)); k += 1) {
+            /* Skip delimiters. */
+        }
+        return peek(k) < 0 ? -1 : k;
+    }
+
+    /** Return the offset from the current position of the end of the token
+     *  that starts at offset START. */
+    private int tokenEnd(int start) {
+        int k;
+        for (k = start; peek(k) >= 0 && !isDelimiter(peek(k)); k += 1) {
+            /* Skip token. */
+        }
+        return k;
+    }
+
+    /** Return true iff the next token is WORD. */
+    private boolean nextTokenIs(String word) {
+        int start = tokenStart();
+        if (start < 0 || tokenEnd(start) - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i += 1) {
+            if (peek(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return true iff the next token contains '#'. */
+    private boolean nextTokenHasComment() {
+        int start = tokenStart();
+        if (start < 0) {
+            return false;
+        }
+        for (int k = start, end = tokenEnd(start); k < end; k += 1) {
+            if (peek(k) == '#') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return true iff the next token is an optionally signed decimal
+     *  numeral in the range of int. */
+    private boolean nextTokenIsInt() {
+        int start = tokenStart();
+        return start >= 0 && parseInt(start, tokenEnd(start)) != null;
+    }
+
+    /** Return the value of the numeral occupying offsets START to END, or
+     *  null if it is not a valid int. */
+    private Integer parseInt(int start, int end) {
+        int k = start;
+        boolean negative = peek(k) == '-';
+        if (negative || peek(k) == '+') {
+            k += 1;
+        }
+        if (k == end) {
+            return null;
+        }
+        long val = 0;
+        for (; k < end; k += 1) {
+            int c = peek(k);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            val = 10 * val + (c - '0');
+            if (val > (long) Integer.MAX_VALUE + 1) {
+                return null;
+            }
+        }
+        val = negative ? -val : val;
+        if (val > Integer.MAX_VALUE) {
+            return null;
+        }
+        return (int) val;
+    }
+
+    /** Consume and return the next token as an int.  Throws
+     *  NoSuchElementException if it is missing or not a valid int. */
+    private int nextInt() {
+        int start = tokenStart();
+        if (start < 0) {
+            throw new NoSuchElementException();
+        }
+        int end = tokenEnd(start);
+        Integer val = parseInt(start, end);
+        if (val == null) {
+            throw new NoSuchElementException();
+        }
+        advance(end);
+        return val;
+    }
+
+    /** Consume the next token, which must be WORD.  Otherwise, throw
+     *  NoSuchElementException. */
+    private void expect(String word) {
+        if (!nextTokenIs(word)) {
+            throw new NoSuchElementException();
+        }
+        skipToken();
+    }
+
+    /** Consume the next token. */
+    private void skipToken() {
+        advance(tokenEnd(tokenStart()));
+    }
+
+    /** Consume and return the rest of the current line, excluding its line
+     *  terminator. */
+    private String nextLine() {
+        byte[] line = new byte[lineEnd()];
+        _buf.get(line);
+        skipLineTerminator();
+        return new String(line, StandardCharsets.UTF_8);
+    }
+
+    /** Return the offset from the current position of the end of the
+     *  current line, excluding its terminator. */
+    private int lineEnd() {
+        int end;
+        for (end = 0; peek(end) >= 0 && peek(end) != '\n'
+                 && peek(end) != '\r'; end += 1) {
+            /* Find end of line. */
+        }
+        return end;
+    }
+
+    /** Consume the line terminator at the current position, if any. */
+    private void skipLineTerminator() {
+        if (peek(0) == '\r') {
+            advance(peek(1) == '\n' ? 2 : 1);
+        } else if (peek(0) == '\n') {
+            advance(1);
+        }
+    }
+
+    /** Consume the next K bytes, which must already be buffered. */
+    private void advance(int k) {
+        _buf.position(_buf.position() + k);
+    }
+
+    /** Input source, or null if all input is in _buf. */
+    private final ReadableByteChannel _in;
+    /** Input read so far.  Unconsumed input is between its position and
+     *  limit. */
+    private ByteBuffer _buf;
+    /** True iff all input has been read into _buf. */
+    private boolean _eof;
     /** Source for random puzzles. */
     private PuzzleGenerator _randomPuzzler = new PuzzleGenerator(0);
 }
@@ -11,7 +11,14 @@ public class UnitTests {
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
         System.exit(textui.runClasses(ModelTests.class,
-                PuzzleGeneratorTests.class, PlaceTests.class));
+                PuzzleGeneratorTests.class, PlaceTests.class,
+                PrefetchingPuzzleSourceTests.class,
+                PuzzlePackTests.class, PuzzleCacheTests.class,
+                CommandTests.class, ScriptRunnerTests.class,
+                GameServerTests.class, CommandLoopTests.class,
+                HibernatorTests.class, BroadcastViewTests.class,
+                JournalTests.class, ControllerTests.class,
+                BatchRendererTests.class, GenerationStatsTests.class));
     }
 
 }
@@ -2,6 +2,7 @@ package signpost;
 
 import static org.junit.Assert.*;
 import static java.lang.System.arraycopy;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.HashSet;
 
@@ -49,6 +50,27 @@ class Utils {
         return Long.parseLong(numeral);
     }
 
+    /** Return the length of DURATION in nanoseconds, limiting the result to
+     *  a quarter of the range of long, so that it may safely be added to a
+     *  System.nanoTime() value. */
+    static long nanos(Duration duration) {
+        try {
+            return Math.min(duration.toNanos(), Long.MAX_VALUE / 4);
+        } catch (ArithmeticException excp) {
+            return Long.MAX_VALUE / 4;
+        }
+    }
+
+    /** Return the random seed to use for the K-th puzzle generated after
+     *  seeding with SEED.  Different values of K give well-scattered
+     *  seeds (this is the SplitMix64 finalizer). */
+    static long puzzleSeed(long seed, long k) {
+        long z = seed + (k + 1) * 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
     /** Given H x W array A, return a W x H array in which the columns of
      *  A, each reversed, are the rows of the result.  That is, returns B
      *  so that B[x][y] is A[H - y - 1][x].  This is a convenience method
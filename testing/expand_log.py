@@ -0,0 +1,51 @@
+#!/usr/bin/env python3
+# -*-Python-*-
+
+"""Expands the output of "java signpost.Main --testing --diff-log" into the
+output of the same run without --diff-log, so that it may be compared with
+.std files.  Usage:
+
+    python3 expand_log.py < DIFF-LOG > FULL-LOG
+"""
+
+import re, sys
+
+DIFF_LINE = re.compile(r'(\d+) (\d+) (.{6})\|(.{6})$')
+
+def expand(text):
+    """Return TEXT, a diff log, with each 'D[' board replaced by the full
+    'B[' board it describes.  Other lines are copied unchanged."""
+    result = []
+    board = None
+    lines = iter(re.split(r'(?<=\n)', text))
+    for line in lines:
+        if line.startswith('B['):
+            board = [line.rstrip('\r\n')]
+            result.append(line)
+            for line in lines:
+                result.append(line)
+                board.append(line.rstrip('\r\n'))
+                if line.rstrip('\r\n').endswith(']'):
+                    break
+        elif line.startswith('D[') and board is not None:
+            board[0] = 'B' + line.rstrip('\r\n')[1:]
+            height = (len(board) - 2) // 3
+            for line in lines:
+                if line.startswith(']'):
+                    break
+                mat = DIFF_LINE.match(line.rstrip('\r\n'))
+                if mat is None:
+                    raise ValueError("bad diff-log line: " + line)
+                x, y = int(mat.group(1)), int(mat.group(2))
+                col = 1 + 7 * x
+                for row, text in ((3 * (height - y) - 1, mat.group(3)),
+                                  (3 * (height - y), mat.group(4))):
+                    board[row] = board[row][:col] + text \
+                                 + board[row][col + 6:]
+            result.append('\n'.join(board) + '\n')
+        else:
+            result.append(line)
+    return ''.join(result)
+
+if __name__ == '__main__':
+    sys.stdout.write(expand(sys.stdin.read()))
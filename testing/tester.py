@@ -2,6 +2,7 @@
 # -*-Python-*-
 
 from testing import Tester, contents, interpret_problem
+from expand_log import expand
 import os, sys, re
 import io
 import getopt
@@ -117,6 +118,8 @@ def dir_of(x0, y0, x1, y1):
 class Proj0_Tester(Tester):
     def output_filter(self, id, text):
         text = re.sub(r'#.*\r?\n','',text)
+        if diff_log:
+            text = expand(text)
         return text
 
     def output_compare(self, testid):
@@ -137,15 +140,19 @@ class Proj0_Tester(Tester):
             self.reason = True
 
 show=None
+diff_log=False
 try:
-    opts, args = getopt.getopt(sys.argv[1:], '', ['show='])
+    opts, args = getopt.getopt(sys.argv[1:], '', ['show=', 'diff-log'])
     for opt, val in opts:
         if opt == '--show':
             show = int(val)
+        elif opt == '--diff-log':
+            diff_log = True
+            PROGRAM += " --diff-log"
         else:
             assert False
 except:
-    print("Usage: python3 tester.py [--show=N] TEST.in...",
+    print("Usage: python3 tester.py [--show=N] [--diff-log] TEST.in...",
           file=sys.stderr)
     sys.exit(1)
 